@@ -0,0 +1,118 @@
+/*
+ * DeeJ - An ImageJ plugin detects sound levels of mic or computer and triggers Fiji commands on the currently active window based on a defined threshold.
+ * 
+ * License: This software is provided under the GNU General Public License (GPL) version 3.
+ * Copyright (c) 2025 Hugo LE GUENNO
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package deej.bench;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import deej.analysis.Band;
+import deej.analysis.FeatureTimeline;
+import deej.analysis.Trigger;
+import deej.audio.SyntheticAudioSource;
+import deej.render.BatchRenderer;
+import deej.render.LutBank;
+import ij.ImageStack;
+import ij.gui.NewImage;
+import ij.process.ImageProcessor;
+
+/**
+ * Offline rendering of a 20 s click track at 30 fps: the timeline analysis, one frame on the calling
+ * thread, and a virtual stack chunk across all cores. Seconds of video per second of wall time is
+ * 30 fps divided by the frame throughput.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class BatchBenchmark {
+
+    private static final String[] LUT_NAMES = {"Red", "Green", "Blue", "Cyan", "Magenta", "Spectrum", "Ice", "Fire"};
+    private static final float SAMPLE_RATE = 44100;
+
+    @Param({"512", "2048"})
+    public int size;
+
+    @Param({"8", "16"})
+    public int bitDepth;
+
+    private FeatureTimeline timeline;
+    private BatchRenderer renderer;
+    private ImageStack stack;
+    private int frame;
+
+    @Setup
+    public void setUp() throws IOException {
+        timeline = analyze();
+        ImageProcessor ip = NewImage.createImage("DeeJ bench", size, size, 1, bitDepth, NewImage.FILL_RAMP)
+                .getProcessor();
+        renderer = new BatchRenderer(ip, timeline, new LutBank(LUT_NAMES, null),
+                Runtime.getRuntime().availableProcessors());
+        renderer.setRotation(Band.LEVEL, Trigger.ONSET);
+        renderer.setContrast(Band.LEVEL, Trigger.LEVEL);
+        renderer.setLut(Band.LEVEL, Trigger.BEAT, 4);
+        renderer.setSensitivity(500);
+        renderer.plan();
+        stack = renderer.createVirtualStack();
+    }
+
+    @TearDown
+    public void tearDown() {
+        renderer.close();
+    }
+
+    private static FeatureTimeline analyze() throws IOException {
+        return FeatureTimeline.analyze(new SyntheticAudioSource(SyntheticAudioSource.Waveform.CLICKS, SAMPLE_RATE,
+                2, 0.8, 1, false, 20), 30, 1024, 256, -1);
+    }
+
+    @Benchmark
+    public FeatureTimeline timeline() throws IOException {
+        return analyze();
+    }
+
+    @Benchmark
+    public ImageProcessor renderFrame() {
+        frame = (frame + 1) % renderer.getFrameCount();
+        return renderer.renderFrame(frame);
+    }
+
+    // Each call lands outside the cached chunk, so it measures one parallel chunk render
+    @Benchmark
+    public ImageProcessor virtualChunk() {
+        frame = (frame + 97) % renderer.getFrameCount();
+        return stack.getProcessor(frame + 1);
+    }
+}
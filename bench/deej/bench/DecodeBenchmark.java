@@ -0,0 +1,105 @@
+/*
+ * DeeJ - An ImageJ plugin detects sound levels of mic or computer and triggers Fiji commands on the currently active window based on a defined threshold.
+ * 
+ * License: This software is provided under the GNU General Public License (GPL) version 3.
+ * Copyright (c) 2025 Hugo LE GUENNO
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package deej.bench;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import deej.analysis.Band;
+import deej.analysis.Features;
+import deej.audio.PcmDecoder;
+import deej.audio.SyntheticAudioSource;
+
+/**
+ * PCM decode, peak detection and intensity scaling for one 2048-byte capture block.
+ * The legacy methods are the original doInBackground loop, kept verbatim as the baseline.
+ * PcmDecodeBenchmark covers the other sample formats.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class DecodeBenchmark {
+
+    private static final int PROGRESS_BAR_HEIGHT = 20;
+    private static final int SENSITIVITY = 50;
+
+    private final byte[] buffer = new byte[2048];
+    private final float[] block = new float[1024];
+    private final float[] record = new float[Features.WIDTH];
+    private final int[] levels = new int[Band.values().length];
+    private final ByteBuffer bytes = ByteBuffer.wrap(buffer);
+    private PcmDecoder decoder;
+
+    @Setup
+    public void setUp() throws Exception {
+        SyntheticAudioSource source = new SyntheticAudioSource(SyntheticAudioSource.Waveform.NOISE, 44100, 0, 0.8, 1, false, 0);
+        source.open();
+        decoder = new PcmDecoder(source.getFormat());
+        source.read(buffer, 0, buffer.length);
+        source.close();
+    }
+
+    @Benchmark
+    public double legacyDecodePeak() {
+        double intensity = 0;
+        for (int i = 0; i < buffer.length; i += 2) {
+            short sample = (short) ((buffer[i + 1] << 8) | buffer[i]);
+            intensity = Math.max(intensity, Math.abs(sample) / 32768.0);
+        }
+        return intensity;
+    }
+
+    @Benchmark
+    public float[] pcmDecoder() {
+        decoder.decode(bytes, buffer.length, block);
+        record[Features.PEAK] = decoder.getPeak();
+        record[Features.RMS] = decoder.getRms();
+        return record;
+    }
+
+    @Benchmark
+    public int legacyIntensityScaling() {
+        double intensity = record[Features.PEAK];
+        return (int) (intensity * PROGRESS_BAR_HEIGHT * SENSITIVITY / 100.0);
+    }
+
+    @Benchmark
+    public int[] bandScaling() {
+        for (Band band : Band.values()) {
+            levels[band.ordinal()] = (int) (record[band.getFeatureIndex()] * PROGRESS_BAR_HEIGHT * SENSITIVITY / 100.0);
+        }
+        return levels;
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * DeeJ - An ImageJ plugin detects sound levels of mic or computer and triggers Fiji commands on the currently active window based on a defined threshold.
+ * 
+ * License: This software is provided under the GNU General Public License (GPL) version 3.
+ * Copyright (c) 2025 Hugo LE GUENNO
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package deej.bench;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import deej.render.LutBank;
+import deej.render.RotationRenderer;
+import ij.ImagePlus;
+import ij.gui.NewImage;
+import ij.plugin.LutLoader;
+import ij.process.ImageProcessor;
+
+/**
+ * The three effects on synthetic 8-bit images of several sizes, headless (updateAndDraw without a window).
+ * Legacy methods reproduce what the original code paid per trigger: setMinAndMax + updateAndDraw,
+ * a LUT decoded again by name, and an in-place bilinear rotate of the already rotated pixels.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class EffectBenchmark {
+
+    // The built-in subset of the DeeJ LUT list, the others need Fiji's luts folder
+    private static final String[] LUT_NAMES = {"Red", "Green", "Blue", "Cyan", "Magenta", "Spectrum", "Ice", "Fire"};
+    private static final double[] CONTRASTS = {1.0, 0.95, 0.9, 0.85, 0.8, 0.65, 0.5, 0.3};
+
+    @Param({"512", "2048", "4096"})
+    public int size;
+
+    private ImagePlus imp;
+    private LutBank lutBank;
+    private RotationRenderer rotationRenderer;
+    private final Random random = new Random(1);
+    private int step;
+
+    @Setup
+    public void setUp() {
+        imp = NewImage.createImage("DeeJ bench", size, size, 1, 8, NewImage.FILL_RANDOM);
+        lutBank = new LutBank(LUT_NAMES, null);
+        rotationRenderer = new RotationRenderer(imp.getProcessor());
+    }
+
+    @Benchmark
+    public ImagePlus legacyContrast() {
+        double contrast = CONTRASTS[step++ & 7];
+        imp.getProcessor().setMinAndMax(0, 255 * contrast);
+        imp.updateAndDraw();
+        return imp;
+    }
+
+    @Benchmark
+    public ImagePlus legacyLut() {
+        ImageProcessor ip = imp.getProcessor();
+        ip.setColorModel(LutLoader.getLut(LUT_NAMES[random.nextInt(LUT_NAMES.length)]));
+        imp.updateAndDraw();
+        return imp;
+    }
+
+    @Benchmark
+    public ImagePlus lutBank() {
+        lutBank.select(imp, lutBank.randomIndex(random), 0);
+        imp.updateAndDraw();
+        return imp;
+    }
+
+    @Benchmark
+    public ImagePlus legacyRotation() {
+        ImageProcessor ip = imp.getProcessor();
+        ip.setInterpolationMethod(ImageProcessor.BILINEAR);
+        ip.setBackgroundValue(0);
+        ip.rotate(1 + (step++ & 7));
+        imp.updateAndDraw();
+        return imp;
+    }
+
+    @Benchmark
+    public ImagePlus rotationRenderer() {
+        rotationRenderer.rotateBy(1 + (step++ & 7));
+        rotationRenderer.render();
+        imp.updateAndDraw();
+        return imp;
+    }
+}
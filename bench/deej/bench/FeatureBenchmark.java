@@ -0,0 +1,89 @@
+/*
+ * DeeJ - An ImageJ plugin detects sound levels of mic or computer and triggers Fiji commands on the currently active window based on a defined threshold.
+ * 
+ * License: This software is provided under the GNU General Public License (GPL) version 3.
+ * Copyright (c) 2025 Hugo LE GUENNO
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package deej.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import deej.analysis.Features;
+import deej.analysis.OnsetDetector;
+import deej.analysis.SpectralAnalyzer;
+import deej.audio.SyntheticAudioSource;
+
+/**
+ * Cost of one analysis hop: windowed FFT with band levels and flux, and the onset detector over the hop.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class FeatureBenchmark {
+
+    @Param({"1024", "2048"})
+    public int fftSize;
+
+    @Param({"256", "512"})
+    public int hopSize;
+
+    private SpectralAnalyzer analyzer;
+    private OnsetDetector onsets;
+    private float[] hop;
+    private final float[] record = new float[Features.WIDTH];
+
+    @Setup
+    public void setUp() throws Exception {
+        analyzer = new SpectralAnalyzer(fftSize, hopSize, 48000);
+        onsets = new OnsetDetector(48000);
+        SyntheticAudioSource source = new SyntheticAudioSource(SyntheticAudioSource.Waveform.NOISE, 48000, 0, 0.5, 1, false, 0);
+        source.open();
+        byte[] bytes = new byte[hopSize * 2];
+        source.read(bytes, 0, bytes.length);
+        source.close();
+        hop = new float[hopSize];
+        for (int i = 0; i < hopSize; i++) {
+            hop[i] = (short) ((bytes[2 * i] & 0xff) | (bytes[2 * i + 1] << 8)) / 32768f;
+        }
+    }
+
+    @Benchmark
+    public float[] spectralHop() {
+        analyzer.next(hop, 0, record);
+        return record;
+    }
+
+    @Benchmark
+    public int onsetHop() {
+        return onsets.process(hop, 0, hopSize);
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * DeeJ - An ImageJ plugin detects sound levels of mic or computer and triggers Fiji commands on the currently active window based on a defined threshold.
+ * 
+ * License: This software is provided under the GNU General Public License (GPL) version 3.
+ * Copyright (c) 2025 Hugo LE GUENNO
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package deej.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import deej.render.IntensityKernel;
+import ij.gui.NewImage;
+import ij.process.ImageProcessor;
+
+/**
+ * Window, gamma and LUT mapping of one ramp plane to RGB at each bit depth. Legacy is ImageJ's own
+ * convertToRGB, single threaded with a new buffer every call; the kernel reuses its buffer and
+ * tables and spreads bands of rows over the common pool. Gamma changes every call so the tables
+ * are built again each time, the worst case of an audio-driven gamma.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class IntensityBenchmark {
+
+    @Param({"1024", "4096"})
+    public int size;
+
+    @Param({"8", "16", "32"})
+    public int bitDepth;
+
+    private ImageProcessor ip;
+    private IntensityKernel kernel;
+    private int[] rgb;
+    private int call;
+
+    @Setup
+    public void setUp() {
+        ip = NewImage.createImage("DeeJ bench", size, size, 1, bitDepth, NewImage.FILL_RAMP).getProcessor();
+        ip.resetMinAndMax();
+        ip.setMinAndMax(ip.getMin(), ip.getMin() + (ip.getMax() - ip.getMin()) * 0.7);
+        kernel = new IntensityKernel();
+        kernel.setDisplay(ip);
+    }
+
+    @Benchmark
+    public Object legacyConvertToRgb() {
+        return ip.convertToRGB().getPixels();
+    }
+
+    @Benchmark
+    public int[] kernel() {
+        kernel.setGamma(++call % 2 == 0 ? 1 : 1.5);
+        rgb = kernel.apply(ip, rgb);
+        return rgb;
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * DeeJ - An ImageJ plugin detects sound levels of mic or computer and triggers Fiji commands on the currently active window based on a defined threshold.
+ * 
+ * License: This software is provided under the GNU General Public License (GPL) version 3.
+ * Copyright (c) 2025 Hugo LE GUENNO
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package deej.bench;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import javax.sound.sampled.AudioFormat;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import deej.audio.PcmDecoder;
+
+/**
+ * PcmDecoder on one 1024-frame block of random data in each supported format, mixed down or with one
+ * channel selected. At 48 kHz a block lasts about 21 ms, the scores show how far above real time it runs.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class PcmDecodeBenchmark {
+
+    private static final int FRAMES = 1024;
+
+    @Param({"16", "24", "32", "float"})
+    public String sampleFormat;
+
+    @Param({"1", "2", "8"})
+    public int channels;
+
+    @Param({"-1", "0"})
+    public int channel;
+
+    private PcmDecoder decoder;
+    private ByteBuffer bytes;
+    private final float[] out = new float[FRAMES];
+
+    @Setup
+    public void setUp() {
+        AudioFormat format = sampleFormat.equals("float")
+                ? new AudioFormat(AudioFormat.Encoding.PCM_FLOAT, 48000, 32, channels, 4 * channels, 48000, false)
+                : new AudioFormat(48000, Integer.parseInt(sampleFormat), channels, true, false);
+        decoder = new PcmDecoder(format);
+        decoder.setChannel(channel);
+        byte[] data = new byte[FRAMES * format.getFrameSize()];
+        new Random(1).nextBytes(data);
+        if (sampleFormat.equals("float")) {
+            // Random bytes would give NaNs and huge exponents, write proper samples instead
+            ByteBuffer floats = ByteBuffer.wrap(data).order(java.nio.ByteOrder.LITTLE_ENDIAN);
+            Random random = new Random(1);
+            for (int i = 0; i < FRAMES * channels; i++) {
+                floats.putFloat(random.nextFloat() * 2 - 1);
+            }
+        }
+        bytes = ByteBuffer.wrap(data);
+    }
+
+    @Benchmark
+    public float decode() {
+        decoder.decode(bytes, bytes.capacity(), out);
+        return decoder.getPeak() + decoder.getRms();
+    }
+}
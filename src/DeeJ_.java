@@ -23,19 +23,49 @@ import ij.IJ;
 import ij.ImageJ;
 import ij.ImageListener;
 import ij.ImagePlus;
+import ij.Prefs;
 import ij.WindowManager;
+import ij.gui.GenericDialog;
 import ij.gui.NewImage;
 import ij.plugin.frame.PlugInFrame;
 
 import java.awt.*;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
 import java.awt.event.WindowListener;
-import java.util.Random;
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import deej.action.ActionBinding;
+import deej.action.ActionDispatcher;
+import deej.analysis.Band;
+import deej.analysis.FeatureReplay;
+import deej.analysis.Trigger;
+import deej.audio.AudioSource;
+import deej.audio.FileAudioSource;
+import deej.audio.LineAudioSource;
+import deej.audio.SyntheticAudioSource;
+import deej.engine.DeeJEngine;
+import deej.engine.EngineConfig;
+import deej.metrics.DiagnosticsWindow;
+import deej.render.Effect;
+import deej.render.EffectPipeline;
+import deej.render.EffectSettings;
+import deej.render.FrameState;
+import deej.render.ParameterCurve;
+import deej.render.ParameterMapping;
+import deej.render.StackScrubber;
+import deej.render.TargetRegistry;
 
 import javax.sound.sampled.*;
 import javax.swing.*;
-import java.net.URL;
 
 public class DeeJ_ extends PlugInFrame implements ActionListener, WindowListener, ImageListener {
 	
@@ -46,22 +76,39 @@ public class DeeJ_ extends PlugInFrame implements ActionListener, WindowListener
     private JButton startStopButton;
     private JProgressBar progressBar;
     private JSlider volumeSlider;
-    private JToggleButton rotateToggle;
-    private JToggleButton contrastToggle;
-    private JToggleButton lutToggle;
+    // One toggle per effect, showing the actions of the selected image
+    private final JToggleButton[] effectToggles = new JToggleButton[Effect.values().length];
+    // Band and trigger items of each toggle's right click menu, by effect then by ordinal
+    private final JRadioButtonMenuItem[][] bandItems = new JRadioButtonMenuItem[Effect.values().length][];
+    private final JRadioButtonMenuItem[][] triggerItems = new JRadioButtonMenuItem[Effect.values().length][];
 
     private boolean capturingAudio = false;
-    private int progressBarHeight;
+    // Image the toggles and menus show and edit, each image driven keeps its own actions
     private ImagePlus imp;
-    private static final double INTENSITY_THRESHOLD = 0.01;
-    // Array of LUT names
-    private String[] lutNames = {
-            "Red", "Green", "Blue", "Cyan", "Magenta", "Yellow Hot", "Spectrum", "Ice", "Fire",
-            "Rainbow RGB", "Cyan Hot", "Orange Hot", "5_Ramps", "Gem"
-    };
+    // Capture, analysis and effects; this frame only edits its configuration and shows its levels
+    private final DeeJEngine engine = new DeeJEngine();
+    private final TargetRegistry targets = engine.getTargets();
+    private final ActionDispatcher actions = engine.getActions();
+    // Frame thread -> EDT, at most one progress bar update waiting
+    private volatile int displayedLevel;
+    private final AtomicBoolean levelPending = new AtomicBoolean();
+    private boolean showDiagnostics = false;
+    private DiagnosticsWindow diagnosticsWindow;
+    private String actionText = Prefs.get("deej.actions", "");
 
     public DeeJ_() {
     	super("DeeJ");
+        engine.setFrameListener(this::showLevel);
+        engine.setStopListener(() -> SwingUtilities.invokeLater(() -> {
+            capturingAudio = false;
+            startStopButton.setSelected(false);
+            stopAudioCapture();
+        }));
+        try {
+            actions.setBindings(ActionDispatcher.parse(actionText));
+        } catch (IllegalArgumentException e) {
+            IJ.log("DeeJ: action bindings ignored, " + e.getMessage());
+        }
     	        // Chargement de l'icône
       try {
           URL iconURL = getClass().getResource("/Resources/DeeJ.ico");
@@ -85,8 +132,8 @@ public class DeeJ_ extends PlugInFrame implements ActionListener, WindowListener
         // Main panel with GridLayout for 3 columns and 1 row
         JPanel mainPanel = new JPanel(new GridLayout(1, 3));
 
-        // First column panel with GridLayout for 1 column and 3 rows
-        JPanel firstColumnPanel = new JPanel(new GridLayout(4, 1));
+        // First column panel with GridLayout for 1 column and 5 rows
+        JPanel firstColumnPanel = new JPanel(new GridLayout(5, 1));
 
         // Second column panel with GridLayout for 1 column and 1 row
         JPanel secondColumnPanel = new JPanel(new GridLayout(1, 1));
@@ -102,29 +149,27 @@ public class DeeJ_ extends PlugInFrame implements ActionListener, WindowListener
         startStopButton = new JButton(playIcon);
         startStopButton.addActionListener(this);
         startStopButton.setSelected(false);
-
-        rotateToggle = new JToggleButton("Rotate");
-        rotateToggle.setSelected(false);
-        rotateToggle.setFont(new Font("Arial", Font.PLAIN, 12));
-        rotateToggle.setBackground(Color.LIGHT_GRAY);
-        rotateToggle.addActionListener(this);
-
-        contrastToggle = new JToggleButton("Contrast");
-        contrastToggle.setSelected(false);
-        contrastToggle.setFont(new Font("Arial", Font.PLAIN, 12));
-        contrastToggle.setBackground(Color.LIGHT_GRAY);
-        contrastToggle.addActionListener(this);
-
-        lutToggle = new JToggleButton("LUT");
-        lutToggle.setSelected(false);
-        lutToggle.setFont(new Font("Arial", Font.PLAIN, 12));
-        lutToggle.setBackground(Color.LIGHT_GRAY);
-        lutToggle.addActionListener(this);
+        startStopButton.setToolTipText("Right click to choose the audio source");
+        startStopButton.addMouseListener(new MouseAdapter() {
+            @Override
+            public void mousePressed(MouseEvent e) {
+                if (SwingUtilities.isRightMouseButton(e) && !capturingAudio) {
+                    chooseAudioSource();
+                }
+            }
+        });
 
         firstColumnPanel.add(startStopButton);
-        firstColumnPanel.add(rotateToggle);
-        firstColumnPanel.add(contrastToggle);
-        firstColumnPanel.add(lutToggle);
+        for (Effect effect : Effect.values()) {
+            JToggleButton toggle = new JToggleButton(effect.getLabel());
+            toggle.setSelected(false);
+            toggle.setFont(new Font("Arial", Font.PLAIN, 12));
+            toggle.setBackground(Color.LIGHT_GRAY);
+            toggle.addActionListener(this);
+            effectToggles[effect.ordinal()] = toggle;
+            addActionMenu(effect);
+            firstColumnPanel.add(toggle);
+        }
 
         // Second column components
         volumeSlider = new JSlider(JSlider.VERTICAL, 0, 10000, 50);
@@ -145,6 +190,13 @@ public class DeeJ_ extends PlugInFrame implements ActionListener, WindowListener
             volumeSlider.setValue(newValue);
         });
 
+        // The analysis reads the sensitivity from the engine's configuration, never from the slider
+        volumeSlider.addChangeListener(e -> {
+            int sensitivity = volumeSlider.getValue();
+            engine.updateConfig(config -> config.withSensitivity(sensitivity));
+        });
+        engine.updateConfig(config -> config.withSensitivity(volumeSlider.getValue()));
+
         secondColumnPanel.add(volumeSlider);
 
         progressBar = new JProgressBar(JProgressBar.VERTICAL, 0, 1000);
@@ -153,7 +205,9 @@ public class DeeJ_ extends PlugInFrame implements ActionListener, WindowListener
         // Set the background color of the progress bar
         progressBar.setBackground(Color.WHITE);
 
-        progressBarHeight = progressBar.getPreferredSize().height;
+        int progressBarHeight = progressBar.getPreferredSize().height;
+        int progressBarMaximum = progressBar.getMaximum();
+        engine.updateEffects(effects -> effects.withLevels(progressBarHeight, progressBarMaximum));
 
         // Create GridBagConstraints
         GridBagConstraints progressBarConstraints = new GridBagConstraints();
@@ -183,14 +237,56 @@ public class DeeJ_ extends PlugInFrame implements ActionListener, WindowListener
                 imp.show();
                 IJ.run(imp, "Fire", "");
                 IJ.run(imp, "Enhance Contrast", "saturated=0.35");
-            } catch (Exception e) {
-                e.printStackTrace();
+            } catch (RuntimeException e) {
+                IJ.log("DeeJ: cannot create a starting image: " + e);
             }
         } else {
             imp = IJ.getImage();
         }
+        selectTarget(imp);
     }
     
+    // Right click menu binding the effect to one feature band and one trigger, for the selected image
+    private void addActionMenu(Effect effect) {
+        JPopupMenu menu = new JPopupMenu();
+        ButtonGroup bandGroup = new ButtonGroup();
+        bandItems[effect.ordinal()] = new JRadioButtonMenuItem[Band.values().length];
+        for (Band band : Band.values()) {
+            JRadioButtonMenuItem item = new JRadioButtonMenuItem(band.getLabel(), band == Band.LEVEL);
+            item.addActionListener(e -> {
+                if (imp != null) {
+                    targets.add(imp).setBand(effect, band);
+                }
+            });
+            bandGroup.add(item);
+            menu.add(item);
+            bandItems[effect.ordinal()][band.ordinal()] = item;
+        }
+        menu.addSeparator();
+        ButtonGroup triggerGroup = new ButtonGroup();
+        triggerItems[effect.ordinal()] = new JRadioButtonMenuItem[Trigger.values().length];
+        for (Trigger trigger : Trigger.values()) {
+            JRadioButtonMenuItem item = new JRadioButtonMenuItem("Fire on " + trigger.getLabel().toLowerCase(),
+                    trigger == effect.getDefaultTrigger());
+            item.addActionListener(e -> {
+                if (imp != null) {
+                    targets.add(imp).setTrigger(effect, trigger);
+                }
+            });
+            triggerGroup.add(item);
+            menu.add(item);
+            triggerItems[effect.ordinal()][trigger.ordinal()] = item;
+        }
+        menu.addSeparator();
+        // Proxy rendering only touches the screen, this writes the look into the image itself
+        JMenuItem commitItem = new JMenuItem("Commit proxy to full resolution");
+        commitItem.addActionListener(e -> targets.commit(imp));
+        menu.add(commitItem);
+        JToggleButton toggleButton = effectToggles[effect.ordinal()];
+        toggleButton.setComponentPopupMenu(menu);
+        toggleButton.setToolTipText("Right click to choose the band and the trigger for this image");
+    }
+
     private void updateCheckboxColor(JToggleButton toggleButton, boolean isSelected) {
         // Update the color of the toggle button based on its selection
         if (isSelected) {
@@ -219,153 +315,253 @@ public class DeeJ_ extends PlugInFrame implements ActionListener, WindowListener
                 startAudioCapture();
             } else {
                 capturingAudio = false;
+                engine.stop();
                 stopAudioCapture(); // Remove the extra stopAudioCapture() call here
             }
   
-        } else if (e.getSource() == rotateToggle) {
-            updateCheckboxColor(rotateToggle, rotateToggle.isSelected());
-            if (!capturingAudio) {
-                double absolutePercentage = progressBar.getValue() * 100.0 / progressBarHeight;
-                if (rotateToggle.isSelected()) {
-                    adjustRotation(imp, absolutePercentage);
-                }
-            }
-        } else if (e.getSource() == contrastToggle) {
-            updateCheckboxColor(contrastToggle, contrastToggle.isSelected());
-            if (!capturingAudio) {
-                double absolutePercentage = progressBar.getValue() * 100.0 / progressBarHeight;
-                if (contrastToggle.isSelected()) {
-                    adjustContrast(imp, absolutePercentage);
+        } else {
+            for (Effect effect : Effect.values()) {
+                JToggleButton toggle = effectToggles[effect.ordinal()];
+                if (e.getSource() == toggle) {
+                    updateCheckboxColor(toggle, toggle.isSelected());
+                    // The action is switched for the selected image only, others keep theirs
+                    if (imp != null) {
+                        targets.add(imp).setEnabled(effect, toggle.isSelected());
+                    }
                 }
             }
-        } else if (e.getSource() == lutToggle) {
-        	updateCheckboxColor(lutToggle, lutToggle.isSelected());
-        	 // When LUT checkbox is clicked, change LUT if scaledIntensity is above 700
-            if (e.getSource() == lutToggle) {
-                if (lutToggle.isSelected()) {
-                    int scaledIntensity = progressBar.getValue();
-                    if (scaledIntensity > 700) {
-                        changeRandomLUT();
-                    }
-                } 
-            } 
-        } 
-    }
-    
-        private void changeRandomLUT() {
-        	if (WindowManager.getImageCount() != 0)  {
-            int randomIndex = new Random().nextInt(lutNames.length);
-            String selectedLut = lutNames[randomIndex];
-            IJ.run(imp, selectedLut, "");}
-            else {updateToggleState();}
         }
+    }
 
-        private void startAudioCapture() {
-            // Check if an image is available
-            ImagePlus currentImage = WindowManager.getCurrentImage();
-            if (currentImage == null) {
-            }
-            else {
-	            // Check if the image is in 8-bit format, if not, convert it
-	            int imageType = currentImage.getType();
-	            if (imageType != ImagePlus.GRAY8) {
-	                if (imageType == ImagePlus.GRAY16 || imageType == ImagePlus.COLOR_RGB) {
-	                    IJ.run(currentImage, "8-bit", "");
-	                }
-	            }
+        private void chooseAudioSource() {
+            String[] kinds = {"Line", "File", "Synthetic", "Replay"};
+            String[] mixers = LineAudioSource.getCaptureMixerNames(LineAudioSource.DEFAULT_FORMAT);
+            String[] mixerChoices = new String[mixers.length + 1];
+            mixerChoices[0] = "Default";
+            System.arraycopy(mixers, 0, mixerChoices, 1, mixers.length);
+            String[] waveforms = {"Sine", "Noise", "Clicks"};
+
+            GenericDialog gd = new GenericDialog("DeeJ audio source");
+            gd.addChoice("Source", kinds, kinds[0]);
+            gd.addMessage("Line");
+            gd.addChoice("Mixer", mixerChoices, mixerChoices[0]);
+            gd.addNumericField("Sample rate (Hz)", 44100, 0);
+            gd.addNumericField("Line buffer (bytes, 0 = default)", 0, 0);
+            String[] sampleFormats = {"16-bit", "24-bit", "32-bit", "32-bit float"};
+            gd.addChoice("Sample format", sampleFormats, sampleFormats[0]);
+            gd.addNumericField("Channels", 1, 0);
+            gd.addMessage("File");
+            gd.addFileField("Audio file (WAV/AIFF)", "");
+            gd.addCheckbox("Pace to real time", true);
+            gd.addMessage("Synthetic");
+            gd.addChoice("Waveform", waveforms, waveforms[0]);
+            gd.addNumericField("Frequency / click rate (Hz)", 440, 1);
+            gd.addNumericField("Amplitude (0-1)", 0.5, 2);
+            gd.addNumericField("Seed", 1, 0);
+            EngineConfig config = engine.getConfig();
+            EffectSettings settings = config.getEffects();
+            gd.addMessage("Replay");
+            gd.addFileField("Feature log (.deej)", config.getReplayFile() != null ? config.getReplayFile().getPath() : "");
+            gd.addCheckbox("Replay in real time", config.isReplayRealTime());
+            gd.addFileField("Record features to (empty = off)", config.getRecordPath());
+            gd.addMessage("Effects");
+            gd.addNumericField("LUT crossfade (frames, 0 = cut)", settings.getLutFadeFrames(), 0);
+            gd.addNumericField("Random LUT seed", settings.getSeed(), 0);
+            gd.addCheckbox("Non-destructive rotation", settings.isNonDestructiveRotation());
+            gd.addCheckbox("Apply to all slices, channels and frames", settings.isWholeStack());
+            ParameterMapping rotationMapping = settings.getRotationMapping();
+            ParameterMapping contrastMapping = settings.getContrastMapping();
+            gd.addStringField("Rotation curve (level:degrees)", rotationMapping.getCurve().toString(), 30);
+            gd.addStringField("Contrast curve (level:factor)", contrastMapping.getCurve().toString(), 30);
+            gd.addNumericField("Attack (ms)", rotationMapping.getAttackMillis(), 0);
+            gd.addNumericField("Release (ms)", rotationMapping.getReleaseMillis(), 0);
+            gd.addNumericField("Rotation change threshold (degrees)", rotationMapping.getThreshold(), 2);
+            gd.addNumericField("Contrast change threshold", contrastMapping.getThreshold(), 3);
+            String[] axes = {"Z", "T"};
+            gd.addChoice("Scrub axis", axes, settings.getScrubAxis().name());
+            gd.addNumericField("Slice cache (MB, virtual stacks)", settings.getSliceCacheBytes() >> 20, 0);
+            gd.addNumericField("Prefetch (slices ahead)", settings.getPrefetchSlices(), 0);
+            gd.addNumericField("Proxy above (megapixels, 0 = off)", settings.getProxyPixels() / 1_000_000.0, 0);
+            String[] frameRates = {"30", "60", "120"};
+            gd.addChoice("Frame rate cap (Hz)", frameRates, String.valueOf(config.getFrameRate()));
+            gd.addMessage("Actions, one per line: band trigger[>level] [every=ms] [drop|latest|queue=n] | command | options\n"
+                    + "e.g. bass level>600 every=500 latest | Gaussian Blur... | sigma=2, or flux onset | macro | run(\"Invert\");");
+            gd.addTextAreas(actionText, null, 4, 60);
+            gd.addMessage("Diagnostics");
+            gd.addCheckbox("Show latency diagnostics", showDiagnostics);
+            gd.addNumericField("Dump metrics every (s, 0 = off)", config.getMetricsInterval(), 0);
+            gd.addStringField("Metrics CSV file (empty = log)", config.getMetricsFile(), 24);
+            gd.addMessage("Analysis");
+            gd.addNumericField("FFT size (power of 2)", config.getFftSize(), 0);
+            gd.addNumericField("Hop size (samples)", config.getHopSize(), 0);
+            gd.addNumericField("Input channel (0 = mix all)", config.getInputChannel() + 1, 0);
+            gd.showDialog();
+            if (gd.wasCanceled()) {
+                return;
             }
-            // Now the image is in 8-bit format, proceed with audio capture
-            capturingAudio = true;
-            updateToggleState();
-
-            SwingWorker<Void, Integer> worker = new SwingWorker<Void, Integer>() {
-                @Override
-                protected Void doInBackground() throws Exception {
-                    try {
-                        AudioFormat audioFormat = new AudioFormat(44100, 16, 1, true, false);
-                        DataLine.Info dataLineInfo = new DataLine.Info(TargetDataLine.class, audioFormat);
-                        TargetDataLine targetDataLine = (TargetDataLine) AudioSystem.getLine(dataLineInfo);
-                        targetDataLine.open(audioFormat);
-                        targetDataLine.start();
-
-                        AudioInputStream audioInputStream = new AudioInputStream(targetDataLine);
-
-                        byte[] buffer = new byte[2048];
-                        int bytesRead;
-
-                        boolean lutChanged = false; // Flag to track if LUT was changed
-
-                        while (capturingAudio) {
-                            bytesRead = audioInputStream.read(buffer, 0, buffer.length);
-
-                            double intensity = 0;
-                            for (int i = 0; i < bytesRead; i += 2) {
-                                short sample = (short) ((buffer[i + 1] << 8) | buffer[i]);
-                                intensity = Math.max(intensity, Math.abs(sample) / 32768.0);
-                            }
-
-                            int sensitivity = volumeSlider.getValue();
-                            int scaledIntensity = (int) (intensity * progressBarHeight * sensitivity / 100.0);
-
-                            if (intensity > INTENSITY_THRESHOLD) {
-                                publish(scaledIntensity);
-                            } else {
-                                publish(0); // If intensity is below threshold, set progress bar to 0
-                            }
-
-                            // Check if scaled intensity is above 700 and LUT checkbox is selected
-                            if (scaledIntensity > 700 && lutToggle.isSelected()) {
-                                if (!lutChanged) {
-                                    changeRandomLUT(); // Change LUT once if not already changed
-                                    lutChanged = true; // Set the flag to true to avoid repeated changes
-                                }
-                            } else {
-                                lutChanged = false; // Reset the flag if scaled intensity goes below 700 or LUT checkbox is unchecked
-                            }
-
-                            Thread.sleep(2);
-                        }
 
-                        audioInputStream.close();
-                        targetDataLine.close();
-                        progressBar.setValue(0);
-                    } catch (Exception ex) {
-                        ex.printStackTrace();
-                    }
-                    return null;
-                
+            String kind = gd.getNextChoice();
+            String mixer = gd.getNextChoice();
+            float sampleRate = (float) gd.getNextNumber();
+            int lineBuffer = (int) gd.getNextNumber();
+            String sampleFormat = gd.getNextChoice();
+            int channels = Math.max(1, (int) gd.getNextNumber());
+            String path = gd.getNextString();
+            boolean realTime = gd.getNextBoolean();
+            String waveform = gd.getNextChoice();
+            double frequency = gd.getNextNumber();
+            double amplitude = gd.getNextNumber();
+            long seed = (long) gd.getNextNumber();
+            String replayPath = gd.getNextString().trim();
+            boolean replayRealTime = gd.getNextBoolean();
+            String recordPath = gd.getNextString();
+            int lutFadeFrames = Math.max(0, (int) gd.getNextNumber());
+            long lutSeed = (long) gd.getNextNumber();
+            boolean nonDestructiveRotation = gd.getNextBoolean();
+            boolean newWholeStack = gd.getNextBoolean();
+            String rotationCurve = gd.getNextString();
+            String contrastCurve = gd.getNextString();
+            double attack = gd.getNextNumber();
+            double release = gd.getNextNumber();
+            double rotationThreshold = gd.getNextNumber();
+            double contrastThreshold = gd.getNextNumber();
+            ParameterMapping newRotationMapping = settings.getRotationMapping();
+            ParameterMapping newContrastMapping = settings.getContrastMapping();
+            try {
+                newRotationMapping = new ParameterMapping(ParameterCurve.parse(rotationCurve), attack, release,
+                        rotationThreshold);
+                newContrastMapping = new ParameterMapping(ParameterCurve.parse(contrastCurve), attack, release,
+                        contrastThreshold);
+            } catch (IllegalArgumentException e) {
+                IJ.error("DeeJ", "Curves not changed:\n" + e.getMessage());
+            }
+            StackScrubber.Axis newScrubAxis = StackScrubber.Axis.valueOf(gd.getNextChoice());
+            long newSliceCacheBytes = (long) Math.max(1, (int) gd.getNextNumber()) << 20;
+            int newPrefetchSlices = Math.max(0, (int) gd.getNextNumber());
+            long newProxyPixels = (long) (Math.max(0, gd.getNextNumber()) * 1_000_000);
+            // Every effect setting of the dialog in one snapshot; renderers and scrubbers are bound
+            // again on the next frame when one they are built from changed
+            ParameterMapping rotation = newRotationMapping;
+            ParameterMapping contrast = newContrastMapping;
+            engine.updateEffects(effects -> effects.withLutFadeFrames(lutFadeFrames)
+                    .withSeed(lutSeed)
+                    .withNonDestructiveRotation(nonDestructiveRotation)
+                    .withWholeStack(newWholeStack)
+                    .withMappings(rotation, contrast)
+                    .withScrub(newScrubAxis, newSliceCacheBytes, newPrefetchSlices)
+                    .withProxyPixels(newProxyPixels));
+            int frameRate = Integer.parseInt(gd.getNextChoice());
+            showDiagnostics = gd.getNextBoolean();
+            int metricsInterval = (int) gd.getNextNumber();
+            String metricsFile = gd.getNextString();
+            showDiagnostics(showDiagnostics);
+            String newActionText = gd.getNextText().trim();
+            try {
+                List<ActionBinding> bindings = ActionDispatcher.parse(newActionText);
+                actions.setBindings(bindings);
+                actionText = newActionText;
+                Prefs.set("deej.actions", actionText);
+            } catch (IllegalArgumentException e) {
+                IJ.error("DeeJ", "Action bindings not changed:\n" + e.getMessage());
+            }
+            int newFftSize = (int) gd.getNextNumber();
+            int newHopSize = (int) gd.getNextNumber();
+            int inputChannel = (int) gd.getNextNumber() - 1;
+            // One snapshot for every engine setting of the dialog, the slider keeps its own
+            try {
+                engine.updateConfig(current -> current.withFrameRate(frameRate)
+                        .withMetrics(metricsInterval, metricsFile)
+                        .withRecordPath(recordPath)
+                        .withInputChannel(inputChannel)
+                        .withAnalysis(newFftSize, newHopSize));
+            } catch (IllegalArgumentException e) {
+                IJ.error("DeeJ", e.getMessage());
+                return;
             }
 
-            @Override
-            protected void process(java.util.List<Integer> chunks) {
-                int scaledIntensity = chunks.get(chunks.size() - 1);
-                progressBar.setValue(scaledIntensity);
-                updateProgressBarColor(scaledIntensity);
-
-                if (scaledIntensity > 700 && lutToggle.isSelected()) {
-                    changeRandomLUT();
+            if (kind.equals("Replay")) {
+                // Checked now so a wrong file is reported here rather than when Play is pressed
+                try (FeatureReplay replay = new FeatureReplay(new File(replayPath))) {
+                    File replayFile = replay.getFile();
+                    engine.updateConfig(current -> current.withReplay(replayFile, replayRealTime));
+                    IJ.log("DeeJ replay: " + replayFile.getName() + ", " + replay.getRecordCount() + " blocks, "
+                            + (replayRealTime ? "real time" : "as fast as possible"));
+                } catch (IOException e) {
+                    IJ.error("DeeJ", "Cannot replay " + replayPath + ":\n" + e.getMessage());
+                }
+                return;
+            }
+            engine.updateConfig(current -> current.withReplay(null, replayRealTime));
+            AudioSource audioSource;
+            if (kind.equals("File")) {
+                if (path.isEmpty() || !new File(path).isFile()) {
+                    IJ.error("DeeJ", "Audio file not found: " + path);
+                    return;
+                }
+                audioSource = new FileAudioSource(new File(path), realTime);
+            } else if (kind.equals("Synthetic")) {
+                audioSource = new SyntheticAudioSource(SyntheticAudioSource.Waveform.valueOf(waveform.toUpperCase()),
+                        sampleRate, frequency, amplitude, seed, realTime, 0);
+            } else {
+                AudioFormat format;
+                if (sampleFormat.endsWith("float")) {
+                    format = new AudioFormat(AudioFormat.Encoding.PCM_FLOAT, sampleRate, 32, channels, 4 * channels,
+                            sampleRate, false);
+                } else {
+                    format = new AudioFormat(sampleRate, Integer.parseInt(sampleFormat.substring(0, 2)), channels, true, false);
                 }
+                audioSource = new LineAudioSource(mixer.equals("Default") ? null : mixer, format, lineBuffer);
+            }
+            engine.setAudioSource(audioSource);
+            IJ.log("DeeJ audio source: " + audioSource.getName());
+        }
 
-                if (imp != null) {
-                    double absolutePercentage = scaledIntensity * 100.0 / progressBarHeight;
-                    if (rotateToggle.isSelected()) {
-                        adjustRotation(imp, absolutePercentage);
-                    }
-                    if (contrastToggle.isSelected()) {
-                        adjustContrast(imp, absolutePercentage);
+        private void showDiagnostics(boolean show) {
+            if (show && diagnosticsWindow == null) {
+                diagnosticsWindow = new DiagnosticsWindow(engine.getLatency(), engine::getSummary);
+                // Closed from its title bar, the next dialog shows it unchecked and can open it again
+                diagnosticsWindow.addWindowListener(new WindowAdapter() {
+                    @Override
+                    public void windowClosed(WindowEvent e) {
+                        if (e.getWindow() == diagnosticsWindow) {
+                            diagnosticsWindow = null;
+                            showDiagnostics = false;
+                        }
                     }
-                }
+                });
+                diagnosticsWindow.setLocation(getX() + getWidth(), getY());
+                diagnosticsWindow.setVisible(true);
+            } else if (!show && diagnosticsWindow != null) {
+                diagnosticsWindow.dispose();
+                diagnosticsWindow = null;
             }
+        }
 
-            @Override
-            protected void done() {
+        private void startAudioCapture() {
+            // Effects work on the display range and on the pixels in place, any bit depth is kept as it is
+            capturingAudio = true;
+            updateToggleState();
+            engine.setActionTarget(imp);
+            if (!engine.start()) {
+                IJ.log("DeeJ: the previous run is still stopping, try again");
                 capturingAudio = false;
-                startStopButton.setSelected(false);
                 stopAudioCapture();
             }
-        };
+        }
 
-        worker.execute();
+    // Frame thread: the bar follows the overall level, redrawn on the EDT at most once per pending update
+    private void showLevel(FrameState state) {
+        displayedLevel = state.getLevel(Band.LEVEL);
+        if (levelPending.compareAndSet(false, true)) {
+            SwingUtilities.invokeLater(() -> {
+                levelPending.set(false);
+                if (capturingAudio) {
+                    int scaledIntensity = displayedLevel;
+                    progressBar.setValue(scaledIntensity);
+                    updateProgressBarColor(scaledIntensity);
+                }
+            });
+        }
     }
 
     private void stopAudioCapture() {
@@ -383,126 +579,71 @@ public class DeeJ_ extends PlugInFrame implements ActionListener, WindowListener
    
 
     
-    private void adjustRotation(ImagePlus imp, double absolutePercentage) {
-    	if (WindowManager.getImageCount() != 0)  {
-            int rotationAngle = 0;
-            if (absolutePercentage >= 100 && absolutePercentage < 200) {
-                rotationAngle = 1;
-            } else if (absolutePercentage >= 200 && absolutePercentage < 300) {
-                rotationAngle = 2;
-            } else if (absolutePercentage >= 300 && absolutePercentage < 400) {
-                rotationAngle = 3;
-            } else if (absolutePercentage >= 400 && absolutePercentage < 500) {
-                rotationAngle = 4;
-            } else if (absolutePercentage >= 600 && absolutePercentage < 700) {
-                rotationAngle = 5;
-            } else if (absolutePercentage >= 700 && absolutePercentage < 800) {
-                rotationAngle = 6;
-            } else if (absolutePercentage >= 800 && absolutePercentage < 900) {
-                rotationAngle = 7;
-            } else if (absolutePercentage >= 900 && absolutePercentage < 1000) {
-                rotationAngle = 8;
-            } else if (absolutePercentage >= 1100 && absolutePercentage < 1200) {
-                rotationAngle = 9;
-            } else if (absolutePercentage >= 1200 && absolutePercentage < 1300) {
-                rotationAngle = 13;
-            } else if (absolutePercentage >= 1300 && absolutePercentage < 1400) {
-                rotationAngle = 19;
-            } else if (absolutePercentage >= 1400 && absolutePercentage < 1500) {
-                rotationAngle = 28;
-            } else if (absolutePercentage >= 1500 && absolutePercentage < 1600) {
-                rotationAngle = 41;
-            }
-            IJ.run("Rotate... ", "angle=" + rotationAngle);
-        }
-        else {updateToggleState();}
-    }
-
-    private void adjustContrast(ImagePlus imp, double absolutePercentage) {
-    	 if (WindowManager.getImageCount() != 0)  {
-            double contrast = 1.0;
-            if (absolutePercentage >= 0 && absolutePercentage < 100) {
-                contrast = 1.0;
-            } else if (absolutePercentage >= 100 && absolutePercentage < 150) {
-                contrast = 0.95;
-            } else if (absolutePercentage >= 150 && absolutePercentage < 200) {
-                contrast = 0.90;
-            } else if (absolutePercentage >= 250 && absolutePercentage < 350) {
-                contrast = 0.85;
-            } else if (absolutePercentage >= 350 && absolutePercentage < 500) {
-                contrast = 0.80;
-            } else if (absolutePercentage >= 500 && absolutePercentage < 900) {
-                contrast = 0.65;
-            } else if (absolutePercentage >= 900 && absolutePercentage < 1500) {
-                contrast = 0.50;
-            } else if (absolutePercentage >= 1500 && absolutePercentage < 2500) {
-                contrast = 0.30;
-            }
-            imp.getProcessor().setMinAndMax(0, 255 * contrast);
-            imp.updateAndDraw();
-        
-        }
-        
-        else {updateToggleState();}
-    
-        }
-    
-    
     public void imageOpened(ImagePlus img) {
         // Réactiver les boutons lorsque qu'une nouvelle image est ouverte
         //startStopButton.setEnabled(true);
-    	updateToggleState();
-        if (img.getType() != ImagePlus.GRAY8) {
-            // Convert the image to 8-bit
-            IJ.run(img, "8-bit", "");
-        }
-        imp = img;
+        SwingUtilities.invokeLater(() -> selectTarget(img));
     }
 
     public void imageUpdated(ImagePlus img) {
-        imp = WindowManager.getCurrentImage(); // Update imp to the new current image
-        updateToggleState();
+        if (engine.isOwnUpdate(img)) {
+            return; // Our own redraw, nothing changed for the toggles
+        }
+        // Effects draw from the worker pool, the toggles are only touched on the EDT
+        SwingUtilities.invokeLater(() -> selectTarget(WindowManager.getCurrentImage()));
     }
     
     @Override
     public void imageClosed(ImagePlus img) {
-        if (imp != null && imp == img) {
-            imp = WindowManager.getCurrentImage(); // Set imp to the remaining open image
+        engine.removeTarget(img);
+        SwingUtilities.invokeLater(() -> selectTarget(WindowManager.getCurrentImage()));
+    }
+
+    // Coming back to the DeeJ window after clicking an image shows that image's actions
+    @Override
+    public void windowActivated(WindowEvent e) {
+        super.windowActivated(e);
+        selectTarget(WindowManager.getCurrentImage());
+    }
+
+    // Shows the actions, bands and triggers of img on the toggles and their menus
+    private void selectTarget(ImagePlus img) {
+        imp = img;
+        engine.setActionTarget(img);
+        EffectPipeline pipeline = targets.get(img);
+        for (Effect effect : Effect.values()) {
+            int index = effect.ordinal();
+            effectToggles[index].setSelected(pipeline != null && pipeline.isEnabled(effect));
+            Band band = pipeline != null ? pipeline.getBand(effect) : Band.LEVEL;
+            Trigger trigger = pipeline != null ? pipeline.getTrigger(effect) : effect.getDefaultTrigger();
+            bandItems[index][band.ordinal()].setSelected(true);
+            triggerItems[index][trigger.ordinal()].setSelected(true);
         }
         updateToggleState();
     }
     
     private void updateToggleState() {
-        ImagePlus imp = WindowManager.getCurrentImage();
-        
         // Enable/disable the toggle buttons based on whether an image is open or not
-        if (imp == null) {
-            rotateToggle.setSelected(false);
-            rotateToggle.setEnabled(false);
-
-            contrastToggle.setSelected(false);
-            contrastToggle.setEnabled(false);
-
-            lutToggle.setSelected(false);
-            lutToggle.setEnabled(false);
-        } else {
-            rotateToggle.setEnabled(true);
-            contrastToggle.setEnabled(true);
-            lutToggle.setEnabled(true);
-        }
-        // Update button colors only if they are enabled
-        if (rotateToggle.isEnabled()) {
-            updateCheckboxColor(rotateToggle, rotateToggle.isSelected());
-        }
-        if (contrastToggle.isEnabled()) {
-            updateCheckboxColor(contrastToggle, contrastToggle.isSelected());
-        }
-        if (lutToggle.isEnabled()) {
-            updateCheckboxColor(lutToggle, lutToggle.isSelected());
+        for (JToggleButton toggle : effectToggles) {
+            if (imp == null) {
+                toggle.setSelected(false);
+            }
+            toggle.setEnabled(imp != null);
+            // Update button colors only if they are enabled
+            if (toggle.isEnabled()) {
+                updateCheckboxColor(toggle, toggle.isSelected());
+            }
         }
     }
 
     
+    @Override
+    public void close() {
+        showDiagnostics(false);
+        engine.close();
+        super.close();
+    }
+
     public static void main(String[] args) {
         new ImageJ();
         DeeJ_ plugin = new DeeJ_();
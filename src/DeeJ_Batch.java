@@ -0,0 +1,237 @@
+/*
+ * DeeJ - An ImageJ plugin detects sound levels of mic or computer and triggers Fiji commands on the currently active window based on a defined threshold.
+ * 
+ * License: This software is provided under the GNU General Public License (GPL) version 3.
+ * Copyright (c) 2025 Hugo LE GUENNO
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+import ij.IJ;
+import ij.ImagePlus;
+import ij.ImageStack;
+import ij.Prefs;
+import ij.WindowManager;
+import ij.gui.GenericDialog;
+import ij.plugin.PlugIn;
+import ij.plugin.filter.AVI_Writer;
+
+import java.io.File;
+import java.io.IOException;
+
+import deej.analysis.Band;
+import deej.analysis.FeatureTimeline;
+import deej.analysis.Trigger;
+import deej.audio.FileAudioSource;
+import deej.render.BatchRenderer;
+import deej.render.LutBank;
+import deej.render.ParameterCurve;
+import deej.render.ParameterMapping;
+
+/**
+ * Renders DeeJ offline: an audio file drives the rotation, contrast and LUT effects on the current
+ * image, and every frame at a fixed frame rate goes to an image stack, a virtual stack or an AVI file.
+ * Runs as fast as the cores allow instead of in real time, and from a macro or headless.
+ */
+public class DeeJ_Batch implements PlugIn {
+
+    private static final String[] OUTPUTS = {"Image stack", "Virtual stack", "AVI file"};
+    private static final String[] COMPRESSIONS = {"JPEG", "PNG", "None"};
+
+    public void run(String arg) {
+        ImagePlus imp = WindowManager.getCurrentImage();
+        if (imp == null) {
+            IJ.noImage();
+            return;
+        }
+        String[] modes = new String[Trigger.values().length + 1];
+        modes[0] = "Off";
+        for (int i = 0; i < Trigger.values().length; i++) {
+            modes[i + 1] = Trigger.values()[i].getLabel();
+        }
+        String[] bands = new String[Band.values().length];
+        for (int i = 0; i < bands.length; i++) {
+            bands[i] = Band.values()[i].getLabel();
+        }
+
+        GenericDialog gd = new GenericDialog("DeeJ batch render");
+        gd.addFileField("Audio file (WAV/AIFF)", "");
+        gd.addNumericField("Frame rate (fps)", 30, 1);
+        gd.addChoice("Output", OUTPUTS, OUTPUTS[0]);
+        gd.addFileField("AVI file", "");
+        gd.addChoice("AVI compression", COMPRESSIONS, COMPRESSIONS[0]);
+        gd.addNumericField("JPEG quality", 90, 0);
+        gd.addMessage("Effects");
+        gd.addChoice("Rotate", modes, "Onset");
+        gd.addChoice("Rotate band", bands, bands[0]);
+        gd.addChoice("Contrast", modes, "Off");
+        gd.addChoice("Contrast band", bands, bands[0]);
+        gd.addChoice("LUT", modes, "Off");
+        gd.addChoice("LUT band", bands, bands[0]);
+        gd.addNumericField("LUT crossfade (frames, 0 = cut)", 0, 0);
+        gd.addNumericField("Sensitivity", 50, 0);
+        gd.addNumericField("Level height (bar units)", 100, 0);
+        gd.addNumericField("LUT level threshold", 700, 0);
+        gd.addNumericField("Seed", 1, 0);
+        gd.addStringField("Rotation curve (level:degrees)", ParameterMapping.ROTATION.getCurve().toString(), 30);
+        gd.addStringField("Contrast curve (level:factor)", ParameterMapping.CONTRAST.getCurve().toString(), 30);
+        gd.addNumericField("Attack (ms)", ParameterMapping.ROTATION.getAttackMillis(), 0);
+        gd.addNumericField("Release (ms)", ParameterMapping.ROTATION.getReleaseMillis(), 0);
+        gd.addNumericField("Rotation change threshold (degrees)", ParameterMapping.ROTATION.getThreshold(), 2);
+        gd.addNumericField("Contrast change threshold", ParameterMapping.CONTRAST.getThreshold(), 3);
+        gd.addNumericField("Gamma", 1, 2);
+        gd.addMessage("Analysis");
+        gd.addNumericField("FFT size (power of 2)", 1024, 0);
+        gd.addNumericField("Hop size (samples)", 256, 0);
+        gd.addNumericField("Input channel (0 = mix all)", 0, 0);
+        gd.addNumericField("Threads", Prefs.getThreads(), 0);
+        gd.showDialog();
+        if (gd.wasCanceled()) {
+            return;
+        }
+
+        String path = gd.getNextString();
+        double frameRate = gd.getNextNumber();
+        String output = gd.getNextChoice();
+        String aviPath = gd.getNextString().trim();
+        String compression = gd.getNextChoice();
+        int jpegQuality = (int) gd.getNextNumber();
+        Trigger rotateTrigger = trigger(gd.getNextChoice());
+        Band rotateBand = Band.values()[gd.getNextChoiceIndex()];
+        Trigger contrastTrigger = trigger(gd.getNextChoice());
+        Band contrastBand = Band.values()[gd.getNextChoiceIndex()];
+        Trigger lutTrigger = trigger(gd.getNextChoice());
+        Band lutBand = Band.values()[gd.getNextChoiceIndex()];
+        int lutFadeFrames = (int) gd.getNextNumber();
+        double sensitivity = gd.getNextNumber();
+        int levelHeight = (int) gd.getNextNumber();
+        double lutThreshold = gd.getNextNumber();
+        long seed = (long) gd.getNextNumber();
+        String rotationCurve = gd.getNextString();
+        String contrastCurve = gd.getNextString();
+        double attack = gd.getNextNumber();
+        double release = gd.getNextNumber();
+        double rotationThreshold = gd.getNextNumber();
+        double contrastThreshold = gd.getNextNumber();
+        double gamma = gd.getNextNumber();
+        int fftSize = (int) gd.getNextNumber();
+        int hopSize = (int) gd.getNextNumber();
+        int channel = (int) gd.getNextNumber() - 1;
+        int threads = (int) gd.getNextNumber();
+
+        if (path.isEmpty() || !new File(path).isFile()) {
+            IJ.error("DeeJ", "Audio file not found: " + path);
+            return;
+        }
+        if (!(frameRate > 0)) {
+            IJ.error("DeeJ", "Frame rate must be positive");
+            return;
+        }
+        if (fftSize < 64 || Integer.bitCount(fftSize) != 1 || hopSize < 1 || hopSize > fftSize) {
+            IJ.error("DeeJ", "FFT size must be a power of 2 (at least 64) and the hop size between 1 and the FFT size");
+            return;
+        }
+        ParameterCurve rotationShape;
+        ParameterCurve contrastShape;
+        try {
+            rotationShape = ParameterCurve.parse(rotationCurve);
+            contrastShape = ParameterCurve.parse(contrastCurve);
+        } catch (IllegalArgumentException e) {
+            IJ.error("DeeJ", "Invalid curve: " + e.getMessage());
+            return;
+        }
+        if (output.equals("AVI file") && aviPath.isEmpty()) {
+            IJ.error("DeeJ", "No AVI file given");
+            return;
+        }
+
+        long start = System.nanoTime();
+        FeatureTimeline timeline;
+        try {
+            IJ.showStatus("DeeJ: analysing " + new File(path).getName());
+            timeline = FeatureTimeline.analyze(new FileAudioSource(new File(path), false), frameRate, fftSize,
+                    hopSize, channel);
+        } catch (IOException | IllegalArgumentException e) {
+            IJ.error("DeeJ", "Could not read " + path + ": " + e.getMessage());
+            return;
+        }
+        if (timeline.getFrameCount() == 0) {
+            IJ.error("DeeJ", "The audio file is shorter than one frame");
+            return;
+        }
+
+        BatchRenderer renderer = new BatchRenderer(imp.getProcessor(), timeline, LutBank.createDefault(), threads);
+        renderer.setRotation(rotateBand, rotateTrigger);
+        renderer.setContrast(contrastBand, contrastTrigger);
+        renderer.setLut(lutBand, lutTrigger, lutFadeFrames);
+        renderer.setSensitivity(sensitivity);
+        renderer.setLevelHeight(levelHeight);
+        renderer.setLutThreshold(lutThreshold);
+        renderer.setSeed(seed);
+        renderer.setRotationMapping(new ParameterMapping(rotationShape, attack, release, rotationThreshold));
+        renderer.setContrastMapping(new ParameterMapping(contrastShape, attack, release, contrastThreshold));
+        renderer.setGamma(gamma);
+        String title = "DeeJ - " + imp.getShortTitle();
+        IJ.showStatus("DeeJ: rendering " + timeline.getFrameCount() + " frames");
+        if (output.equals("Virtual stack")) {
+            // Frames are drawn as they are shown, the pool stays with the stack and its idle threads time out
+            show(title, renderer.createVirtualStack(), frameRate);
+            log(timeline, start, "planned");
+            return;
+        }
+        try {
+            if (output.equals("Image stack")) {
+                long bytes = 4L * renderer.getWidth() * renderer.getHeight() * timeline.getFrameCount();
+                if (bytes > IJ.maxMemory() - IJ.currentMemory()) {
+                    IJ.error("DeeJ", "Not enough memory for " + timeline.getFrameCount() + " frames ("
+                            + (bytes >> 20) + " MB), render to a virtual stack or an AVI file instead");
+                    return;
+                }
+                show(title, renderer.renderStack(), frameRate);
+            } else {
+                int mode = compression.equals("JPEG") ? AVI_Writer.JPEG_COMPRESSION
+                        : compression.equals("PNG") ? AVI_Writer.PNG_COMPRESSION : AVI_Writer.NO_COMPRESSION;
+                renderer.writeAvi(aviPath, mode, jpegQuality);
+            }
+            log(timeline, start, "rendered");
+        } catch (IOException e) {
+            IJ.error("DeeJ", "Could not write " + aviPath + ": " + e.getMessage());
+        } finally {
+            renderer.close();
+            IJ.showProgress(1.0);
+        }
+    }
+
+    private static Trigger trigger(String mode) {
+        for (Trigger trigger : Trigger.values()) {
+            if (trigger.getLabel().equals(mode)) {
+                return trigger;
+            }
+        }
+        return null; // Off
+    }
+
+    private static void show(String title, ImageStack stack, double frameRate) {
+        ImagePlus result = new ImagePlus(title, stack);
+        result.getCalibration().fps = frameRate;
+        result.show();
+    }
+
+    private static void log(FeatureTimeline timeline, long start, String what) {
+        double seconds = (System.nanoTime() - start) / 1e9;
+        IJ.log("DeeJ batch: " + timeline.getFrameCount() + " frames (" + IJ.d2s(timeline.getDurationSeconds(), 1)
+                + " s of audio) " + what + " in " + IJ.d2s(seconds, 1) + " s, "
+                + IJ.d2s(timeline.getDurationSeconds() / seconds, 1) + "x real time");
+    }
+}
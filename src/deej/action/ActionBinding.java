@@ -0,0 +1,289 @@
+/*
+ * DeeJ - An ImageJ plugin detects sound levels of mic or computer and triggers Fiji commands on the currently active window based on a defined threshold.
+ * 
+ * License: This software is provided under the GNU General Public License (GPL) version 3.
+ * Copyright (c) 2025 Hugo LE GUENNO
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package deej.action;
+
+import java.util.ArrayDeque;
+import java.util.Locale;
+import java.util.function.Function;
+
+import ij.IJ;
+import ij.ImagePlus;
+
+import deej.analysis.Band;
+import deej.analysis.Trigger;
+import deej.render.FrameState;
+
+/**
+ * An action bound to a feature condition, with its own bounded queue, minimum interval between
+ * runs and coalescing policy. Written as one line:
+ *
+ * <pre>
+ * band trigger[&gt;threshold] [every=ms] [drop|latest|queue[=size]] | command | options
+ * band trigger[&gt;threshold] [every=ms] [drop|latest|queue[=size]] | macro | code
+ * </pre>
+ *
+ * for example {@code bass level>600 every=500 latest | Gaussian Blur... | sigma=2}. A Level trigger
+ * fires once each time the band rises above the threshold, in progress bar units (0-1000).
+ */
+public class ActionBinding {
+
+    private static final int DEFAULT_QUEUE = 4;
+    private static final int DEFAULT_THRESHOLD = 700;
+
+    private static class Job {
+        final ImagePlus imp;
+        final FrameState state;
+
+        Job(ImagePlus imp, FrameState state) {
+            this.imp = imp;
+            this.state = state;
+        }
+    }
+
+    private final ImageAction action;
+    private final Band band;
+    private final Trigger trigger;
+    private final int threshold;
+    private final long minIntervalNanos;
+    private final Coalescing coalescing;
+    private final int capacity;
+    private final String spec;
+
+    // Condition state, only touched by the thread calling fires()
+    private long onsetsSeen = -1;
+    private long beatsSeen;
+    private boolean above;
+
+    // Queue state, guarded by this
+    private final ArrayDeque<Job> queue = new ArrayDeque<Job>();
+    private boolean running;
+    private long lastStart;
+    private long fired;
+    private long dropped;
+    private long ran;
+    private long failed;
+    private long runNanos;
+    private long maxRunNanos;
+
+    public ActionBinding(ImageAction action, Band band, Trigger trigger, int threshold, long minIntervalMillis,
+            Coalescing coalescing, int capacity) {
+        this(action, band, trigger, threshold, minIntervalMillis, coalescing, capacity, null);
+    }
+
+    private ActionBinding(ImageAction action, Band band, Trigger trigger, int threshold, long minIntervalMillis,
+            Coalescing coalescing, int capacity, String spec) {
+        this.action = action;
+        this.band = band;
+        this.trigger = trigger;
+        this.threshold = threshold;
+        this.minIntervalNanos = Math.max(0, minIntervalMillis) * 1_000_000L;
+        this.coalescing = coalescing;
+        this.capacity = coalescing == Coalescing.QUEUE ? Math.max(1, capacity) : 1;
+        this.spec = spec != null ? spec : band.getLabel().toLowerCase() + " " + trigger.getLabel().toLowerCase()
+                + (trigger == Trigger.LEVEL ? ">" + threshold : "") + " | " + action.getName();
+    }
+
+    // Parses one binding line, throws IllegalArgumentException with a readable message
+    public static ActionBinding parse(String line) {
+        String[] parts = line.split("\\|", 3);
+        if (parts.length < 2) {
+            throw new IllegalArgumentException("Expected 'condition | command | options': " + line);
+        }
+        String[] tokens = parts[0].trim().toLowerCase(Locale.ROOT).split("\\s+");
+        if (tokens.length < 2) {
+            throw new IllegalArgumentException("Expected a band and a trigger: " + line);
+        }
+        Band band = null;
+        for (Band candidate : Band.values()) {
+            if (candidate.getLabel().equalsIgnoreCase(tokens[0])) {
+                band = candidate;
+            }
+        }
+        if (band == null) {
+            throw new IllegalArgumentException("Unknown band '" + tokens[0] + "': " + line);
+        }
+        String triggerToken = tokens[1];
+        int threshold = DEFAULT_THRESHOLD;
+        int cut = triggerToken.indexOf('>');
+        if (cut >= 0) {
+            threshold = parseInt(triggerToken.substring(cut + 1), line);
+            triggerToken = triggerToken.substring(0, cut);
+        }
+        Trigger trigger = null;
+        for (Trigger candidate : Trigger.values()) {
+            if (candidate.getLabel().equalsIgnoreCase(triggerToken)) {
+                trigger = candidate;
+            }
+        }
+        if (trigger == null) {
+            throw new IllegalArgumentException("Unknown trigger '" + triggerToken + "': " + line);
+        }
+        long interval = 0;
+        Coalescing coalescing = Coalescing.LATEST_WINS;
+        int capacity = DEFAULT_QUEUE;
+        for (int i = 2; i < tokens.length; i++) {
+            String token = tokens[i];
+            if (token.startsWith("every=")) {
+                interval = parseInt(token.substring(6).replace("ms", ""), line);
+            } else if (token.equals(Coalescing.DROP.getLabel())) {
+                coalescing = Coalescing.DROP;
+            } else if (token.equals(Coalescing.LATEST_WINS.getLabel())) {
+                coalescing = Coalescing.LATEST_WINS;
+            } else if (token.startsWith(Coalescing.QUEUE.getLabel())) {
+                coalescing = Coalescing.QUEUE;
+                if (token.startsWith("queue=")) {
+                    capacity = parseInt(token.substring(6), line);
+                }
+            } else {
+                throw new IllegalArgumentException("Unknown option '" + token + "': " + line);
+            }
+        }
+        String command = parts[1].trim();
+        String options = parts.length > 2 ? parts[2].trim() : "";
+        if (command.isEmpty()) {
+            throw new IllegalArgumentException("Missing command: " + line);
+        }
+        ImageAction action = command.equalsIgnoreCase("macro") ? new MacroAction(options, band)
+                : new CommandAction(command, options);
+        return new ActionBinding(action, band, trigger, threshold, interval, coalescing, capacity, line.trim());
+    }
+
+    private static int parseInt(String text, String line) {
+        try {
+            return Integer.parseInt(text.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Not a number '" + text + "': " + line);
+        }
+    }
+
+    // One thread only (the frame thread): whether this state fires the binding. Onsets and beats count
+    // since the previous state, a level fires on the way up through the threshold
+    public boolean fires(FrameState state) {
+        boolean first = onsetsSeen < 0;
+        int onsets = first ? 0 : (int) Math.min(Integer.MAX_VALUE, state.getOnsets() - onsetsSeen);
+        int beats = first ? 0 : (int) Math.min(Integer.MAX_VALUE, state.getBeats() - beatsSeen);
+        onsetsSeen = state.getOnsets();
+        beatsSeen = state.getBeats();
+        boolean wasAbove = above;
+        above = state.getLevel(band) > threshold;
+        if (trigger == Trigger.LEVEL) {
+            return above && !wasAbove;
+        }
+        return trigger.fires(onsets, beats);
+    }
+
+    // Adds a run of the action on imp according to the policy. Returns the delay in nanoseconds
+    // after which the caller must start drain(), or -1 when a drain is already pending or the
+    // firing was dropped
+    synchronized long offer(ImagePlus imp, FrameState state, long now) {
+        fired++;
+        long wait = lastStart == 0 ? 0 : Math.max(0, lastStart + minIntervalNanos - now);
+        switch (coalescing) {
+            case DROP:
+                if (running || wait > 0) {
+                    dropped++;
+                    return -1;
+                }
+                queue.add(new Job(imp, state));
+                break;
+            case LATEST_WINS:
+                if (!queue.isEmpty()) {
+                    queue.clear();
+                    dropped++;
+                }
+                queue.add(new Job(imp, state));
+                break;
+            default:
+                if (queue.size() >= capacity) {
+                    dropped++;
+                    return -1;
+                }
+                queue.add(new Job(imp, state));
+                break;
+        }
+        if (running) {
+            return -1;
+        }
+        running = true;
+        return wait;
+    }
+
+    // Action pool: runs the oldest waiting job holding the lock of its image. Returns the delay
+    // before the next drain, or -1 when the queue is empty and the binding is idle again
+    long drain(Function<ImagePlus, Object> locks) {
+        Job job;
+        synchronized (this) {
+            job = queue.poll();
+            if (job == null) {
+                running = false;
+                return -1;
+            }
+            lastStart = System.nanoTime();
+        }
+        long start;
+        long elapsed;
+        boolean ok = false;
+        synchronized (locks.apply(job.imp)) {
+            start = System.nanoTime();
+            try {
+                action.run(job.imp, job.state);
+                ok = true;
+            } catch (Exception e) {
+                IJ.log("DeeJ action '" + spec + "' failed: " + e);
+            }
+            elapsed = System.nanoTime() - start;
+        }
+        synchronized (this) {
+            ran++;
+            if (!ok) {
+                failed++;
+            }
+            runNanos += elapsed;
+            maxRunNanos = Math.max(maxRunNanos, elapsed);
+            if (queue.isEmpty()) {
+                running = false;
+                return -1;
+            }
+            return Math.max(0, lastStart + minIntervalNanos - System.nanoTime());
+        }
+    }
+
+    // Forgets waiting runs and the condition state, for a new capture
+    synchronized void reset() {
+        queue.clear();
+        onsetsSeen = -1;
+        above = false;
+    }
+
+    public String getSummary() {
+        synchronized (this) {
+            return spec + ": " + fired + " fired, " + ran + " ran" + (failed > 0 ? " (" + failed + " failed)" : "")
+                    + ", " + dropped + " dropped, " + queue.size() + " waiting"
+                    + (ran > 0 ? String.format(", %.1f ms average, %.1f ms max", runNanos / 1e6 / ran,
+                            maxRunNanos / 1e6) : "");
+        }
+    }
+
+    @Override
+    public String toString() {
+        return spec;
+    }
+}
@@ -0,0 +1,144 @@
+/*
+ * DeeJ - An ImageJ plugin detects sound levels of mic or computer and triggers Fiji commands on the currently active window based on a defined threshold.
+ * 
+ * License: This software is provided under the GNU General Public License (GPL) version 3.
+ * Copyright (c) 2025 Hugo LE GUENNO
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package deej.action;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import ij.ImagePlus;
+import ij.Prefs;
+
+import deej.render.FrameState;
+
+/**
+ * Runs the user's action bindings off the EDT. Conditions are checked on the caller's thread at
+ * each frame, which is cheap; firing runs are queued on their binding and executed on a small
+ * scheduled pool, so a slow command delays only its own binding and its backlog stays bounded.
+ * Runs on the same image are serialized: each holds the image's lock, the image lock of its effect
+ * pipeline when DeeJ drives it, so two bindings or a binding and the effects never write the same
+ * pixels at once. The event thread never takes that lock. Runs on different images still go in parallel.
+ */
+public class ActionDispatcher {
+
+    private final List<ActionBinding> bindings = new CopyOnWriteArrayList<ActionBinding>();
+    private final ScheduledThreadPoolExecutor pool;
+    // Lock of images with no shared lock, dropped with the image
+    private final Map<ImagePlus, Object> imageLocks = new WeakHashMap<ImagePlus, Object>();
+    private volatile Function<ImagePlus, Object> sharedLocks = imp -> null;
+
+    public ActionDispatcher() {
+        int threads = Math.max(2, Math.min(4, Prefs.getThreads()));
+        pool = new ScheduledThreadPoolExecutor(threads, r -> {
+            Thread thread = new Thread(r, "DeeJ actions");
+            thread.setDaemon(true);
+            return thread;
+        });
+        pool.setKeepAliveTime(30, TimeUnit.SECONDS);
+        pool.allowCoreThreadTimeOut(true);
+    }
+
+    // Parses one binding per line, blank lines and lines starting with # are skipped
+    public static List<ActionBinding> parse(String text) {
+        List<ActionBinding> parsed = new ArrayList<ActionBinding>();
+        for (String line : text.split("\\r?\\n")) {
+            String trimmed = line.trim();
+            if (!trimmed.isEmpty() && !trimmed.startsWith("#")) {
+                parsed.add(ActionBinding.parse(trimmed));
+            }
+        }
+        return parsed;
+    }
+
+    // Replaces the bindings, runs already started finish on their own
+    public synchronized void setBindings(List<ActionBinding> newBindings) {
+        for (ActionBinding binding : bindings) {
+            binding.reset();
+        }
+        bindings.clear();
+        bindings.addAll(newBindings);
+    }
+
+    // Gives the lock a run on an image must hold to exclude other writers, null for none
+    public void setImageLocks(Function<ImagePlus, Object> locks) {
+        sharedLocks = locks;
+    }
+
+    private Object lockFor(ImagePlus imp) {
+        Object lock = sharedLocks.apply(imp);
+        if (lock != null) {
+            return lock;
+        }
+        synchronized (imageLocks) {
+            return imageLocks.computeIfAbsent(imp, key -> new Object());
+        }
+    }
+
+    public List<ActionBinding> getBindings() {
+        return Collections.unmodifiableList(bindings);
+    }
+
+    // One thread only (the frame thread): checks every binding against the state and queues the ones that fire on imp
+    public synchronized void dispatch(ImagePlus imp, FrameState state) {
+        long now = System.nanoTime();
+        for (ActionBinding binding : bindings) {
+            if (binding.fires(state) && imp != null) {
+                schedule(binding, binding.offer(imp, state, now));
+            }
+        }
+    }
+
+    private void schedule(ActionBinding binding, long delayNanos) {
+        if (delayNanos < 0) {
+            return;
+        }
+        pool.schedule(() -> schedule(binding, binding.drain(this::lockFor)), delayNanos, TimeUnit.NANOSECONDS);
+    }
+
+    // Drops waiting runs and condition state, for a new capture
+    public synchronized void reset() {
+        for (ActionBinding binding : bindings) {
+            binding.reset();
+        }
+    }
+
+    public String getSummary() {
+        if (bindings.isEmpty()) {
+            return "no bindings";
+        }
+        List<String> lines = new ArrayList<String>();
+        for (ActionBinding binding : bindings) {
+            lines.add(binding.getSummary());
+        }
+        return String.join("\n", lines);
+    }
+
+    public void close() {
+        setBindings(Collections.<ActionBinding>emptyList());
+        pool.shutdownNow();
+    }
+}
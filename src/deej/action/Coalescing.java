@@ -0,0 +1,45 @@
+/*
+ * DeeJ - An ImageJ plugin detects sound levels of mic or computer and triggers Fiji commands on the currently active window based on a defined threshold.
+ * 
+ * License: This software is provided under the GNU General Public License (GPL) version 3.
+ * Copyright (c) 2025 Hugo LE GUENNO
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package deej.action;
+
+/**
+ * What a binding does with a firing that comes while its action is still running or inside its
+ * minimum interval.
+ */
+public enum Coalescing {
+
+    // The firing is lost, the action only runs when it is idle
+    DROP("drop"),
+    // One firing waits and a newer one replaces it, the action catches up with the latest frame
+    LATEST_WINS("latest"),
+    // Firings wait in order up to the queue size, further ones are lost
+    QUEUE("queue");
+
+    private final String label;
+
+    Coalescing(String label) {
+        this.label = label;
+    }
+
+    public String getLabel() {
+        return label;
+    }
+}
@@ -0,0 +1,50 @@
+/*
+ * DeeJ - An ImageJ plugin detects sound levels of mic or computer and triggers Fiji commands on the currently active window based on a defined threshold.
+ * 
+ * License: This software is provided under the GNU General Public License (GPL) version 3.
+ * Copyright (c) 2025 Hugo LE GUENNO
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package deej.action;
+
+import ij.IJ;
+import ij.ImagePlus;
+
+import deej.render.FrameState;
+
+/**
+ * Runs an ImageJ menu command with its options string, as recorded by the macro recorder.
+ */
+public class CommandAction implements ImageAction {
+
+    private final String command;
+    private final String options;
+
+    public CommandAction(String command, String options) {
+        this.command = command;
+        this.options = options == null ? "" : options;
+    }
+
+    @Override
+    public void run(ImagePlus imp, FrameState state) {
+        IJ.run(imp, command, options);
+    }
+
+    @Override
+    public String getName() {
+        return options.isEmpty() ? command : command + " " + options;
+    }
+}
@@ -0,0 +1,40 @@
+/*
+ * DeeJ - An ImageJ plugin detects sound levels of mic or computer and triggers Fiji commands on the currently active window based on a defined threshold.
+ * 
+ * License: This software is provided under the GNU General Public License (GPL) version 3.
+ * Copyright (c) 2025 Hugo LE GUENNO
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package deej.action;
+
+import ij.ImagePlus;
+
+import deej.render.FrameState;
+
+/**
+ * Something a binding runs on an image when its condition fires. Implementations are called on the
+ * action pool, never on the EDT or the audio thread, one at a time per binding and one at a time
+ * per image: a run holds the image's lock, shared with the effects drawing on it, so a long run
+ * also holds back the effects of that image.
+ */
+public interface ImageAction {
+
+    // Runs on imp, state is the frame that fired the binding
+    void run(ImagePlus imp, FrameState state) throws Exception;
+
+    // Short description, shown in the log and the diagnostics
+    String getName();
+}
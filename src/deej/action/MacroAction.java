@@ -0,0 +1,61 @@
+/*
+ * DeeJ - An ImageJ plugin detects sound levels of mic or computer and triggers Fiji commands on the currently active window based on a defined threshold.
+ * 
+ * License: This software is provided under the GNU General Public License (GPL) version 3.
+ * Copyright (c) 2025 Hugo LE GUENNO
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package deej.action;
+
+import ij.IJ;
+import ij.ImagePlus;
+import ij.WindowManager;
+
+import deej.analysis.Band;
+import deej.render.FrameState;
+
+/**
+ * Runs a macro snippet with the target as the current image of the calling thread, so the macro
+ * works on it even while the user clicks other windows. The level, onset and beat of the frame
+ * that fired are passed as the macro argument, read with getArgument(); the level is the one of the
+ * band the binding watches.
+ */
+public class MacroAction implements ImageAction {
+
+    private final String code;
+    private final Band band;
+
+    public MacroAction(String code, Band band) {
+        this.code = code;
+        this.band = band;
+    }
+
+    @Override
+    public void run(ImagePlus imp, FrameState state) {
+        WindowManager.setTempCurrentImage(imp);
+        try {
+            IJ.runMacro(code, "level=" + state.getLevel(band) + " onsets=" + state.getOnsets()
+                    + " beats=" + state.getBeats());
+        } finally {
+            WindowManager.setTempCurrentImage(null);
+        }
+    }
+
+    @Override
+    public String getName() {
+        return "macro " + (code.length() > 40 ? code.substring(0, 40) + "..." : code);
+    }
+}
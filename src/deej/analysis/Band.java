@@ -0,0 +1,53 @@
+/*
+ * DeeJ - An ImageJ plugin detects sound levels of mic or computer and triggers Fiji commands on the currently active window based on a defined threshold.
+ * 
+ * License: This software is provided under the GNU General Public License (GPL) version 3.
+ * Copyright (c) 2025 Hugo LE GUENNO
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package deej.analysis;
+
+/**
+ * Feature an action can be bound to, with the bass/mid/treble split used by SpectralAnalyzer.
+ */
+public enum Band {
+
+    LEVEL("Level", Features.PEAK),
+    BASS("Bass", Features.BASS),
+    MID("Mid", Features.MID),
+    TREBLE("Treble", Features.TREBLE),
+    FLUX("Flux", Features.FLUX);
+
+    // Band edges in Hz
+    public static final double BASS_MAX_HZ = 250;
+    public static final double MID_MAX_HZ = 4000;
+
+    private final String label;
+    private final int featureIndex;
+
+    Band(String label, int featureIndex) {
+        this.label = label;
+        this.featureIndex = featureIndex;
+    }
+
+    public String getLabel() {
+        return label;
+    }
+
+    public int getFeatureIndex() {
+        return featureIndex;
+    }
+}
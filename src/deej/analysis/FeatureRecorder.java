@@ -0,0 +1,149 @@
+/*
+ * DeeJ - An ImageJ plugin detects sound levels of mic or computer and triggers Fiji commands on the currently active window based on a defined threshold.
+ * 
+ * License: This software is provided under the GNU General Public License (GPL) version 3.
+ * Copyright (c) 2025 Hugo LE GUENNO
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package deej.analysis;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+import ij.IJ;
+
+/**
+ * Appends the per-block feature records of a live session to a binary log, read back by
+ * FeatureReplay. The file is written through memory-mapped regions so an append is a few stores,
+ * and the record count in the header is updated after each record, so a session cut short by a
+ * crash still replays up to its last block.
+ *
+ * <pre>
+ * header, 64 bytes: "DEEJFEAT", version, record width, sample rate, FFT size, hop size,
+ *                   0, start time (ms since the epoch), record count, reserved
+ * record:           nanoseconds since the first record (long), flags (int, bit 0 = active),
+ *                   width floats in the Features layout
+ * </pre>
+ *
+ * All values are little endian. Not thread safe, the analysis thread is the only writer.
+ */
+public class FeatureRecorder implements AutoCloseable {
+
+    static final byte[] MAGIC = {'D', 'E', 'E', 'J', 'F', 'E', 'A', 'T'};
+    static final int VERSION = 1;
+    static final int HEADER_BYTES = 64;
+    static final int COUNT_OFFSET = 40;
+    static final int ACTIVE_FLAG = 1;
+    // Bytes mapped at a time, rounded down to whole records so none straddles two regions
+    private static final int REGION_BYTES = 4 << 20;
+
+    private final File file;
+    private final RandomAccessFile raf;
+    private final FileChannel channel;
+    private final MappedByteBuffer header;
+    private final int width;
+    private final int recordBytes;
+    private final int regionBytes;
+    private MappedByteBuffer region;
+    private long regionStart;
+    private long count;
+    private long firstNanos;
+
+    // Creates or truncates file
+    public FeatureRecorder(File file, int width, float sampleRate, int fftSize, int hopSize) throws IOException {
+        this.file = file;
+        this.width = width;
+        recordBytes = recordBytes(width);
+        regionBytes = REGION_BYTES / recordBytes * recordBytes;
+        raf = new RandomAccessFile(file, "rw");
+        try {
+            raf.setLength(0);
+            channel = raf.getChannel();
+            header = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_BYTES);
+            header.order(ByteOrder.LITTLE_ENDIAN);
+            header.put(MAGIC);
+            header.putInt(VERSION);
+            header.putInt(width);
+            header.putFloat(sampleRate);
+            header.putInt(fftSize);
+            header.putInt(hopSize);
+            header.putInt(0);
+            header.putLong(System.currentTimeMillis());
+            header.putLong(0);
+            regionStart = HEADER_BYTES;
+            region = map(regionStart);
+        } catch (IOException e) {
+            raf.close();
+            throw e;
+        }
+    }
+
+    static int recordBytes(int width) {
+        return 8 + 4 + 4 * width;
+    }
+
+    private MappedByteBuffer map(long position) throws IOException {
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, position, regionBytes);
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        return buffer;
+    }
+
+    // captureNanos is the System.nanoTime() stamp of the block, stored relative to the first record
+    public void append(long captureNanos, boolean active, float[] record) throws IOException {
+        if (count == 0) {
+            firstNanos = captureNanos;
+        }
+        if (region.remaining() < recordBytes) {
+            regionStart += regionBytes;
+            region = map(regionStart);
+        }
+        region.putLong(captureNanos - firstNanos);
+        region.putInt(active ? ACTIVE_FLAG : 0);
+        for (int i = 0; i < width; i++) {
+            region.putFloat(record[i]);
+        }
+        header.putLong(COUNT_OFFSET, ++count);
+    }
+
+    public long getRecordCount() {
+        return count;
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    // Trims the unused end of the last region, where the platform allows it while mapped
+    @Override
+    public void close() {
+        try {
+            header.force();
+            region.force();
+            try {
+                channel.truncate(HEADER_BYTES + count * recordBytes);
+            } catch (IOException e) {
+                // Still mapped on some platforms, the count in the header bounds what is replayed
+            }
+            raf.close();
+        } catch (IOException e) {
+            IJ.log("DeeJ: closing feature log " + file + " failed: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,173 @@
+/*
+ * DeeJ - An ImageJ plugin detects sound levels of mic or computer and triggers Fiji commands on the currently active window based on a defined threshold.
+ * 
+ * License: This software is provided under the GNU General Public License (GPL) version 3.
+ * Copyright (c) 2025 Hugo LE GUENNO
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package deej.analysis;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+/**
+ * Reads back a feature log written by FeatureRecorder, record by record, through read-only
+ * memory-mapped chunks. The records are the analysis output itself, so a replay skips capture and
+ * analysis and gives the same levels, onsets and beats on every run.
+ */
+public class FeatureReplay implements AutoCloseable {
+
+    // Records mapped at a time, well under the 2 GB a single mapping can hold
+    private static final int CHUNK_RECORDS = 1 << 20;
+
+    private final File file;
+    private final RandomAccessFile raf;
+    private final FileChannel channel;
+    private final int width;
+    private final int recordBytes;
+    private final float sampleRate;
+    private final int fftSize;
+    private final int hopSize;
+    private final long startMillis;
+    private final long count;
+    private MappedByteBuffer chunk;
+    private long chunkIndex = -1;
+    private long position;
+    private long timestamp;
+    private boolean active;
+
+    public FeatureReplay(File file) throws IOException {
+        this.file = file;
+        raf = new RandomAccessFile(file, "r");
+        try {
+            channel = raf.getChannel();
+            if (channel.size() < FeatureRecorder.HEADER_BYTES) {
+                throw new IOException("Not a DeeJ feature log: " + file);
+            }
+            MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, FeatureRecorder.HEADER_BYTES);
+            header.order(ByteOrder.LITTLE_ENDIAN);
+            byte[] magic = new byte[FeatureRecorder.MAGIC.length];
+            header.get(magic);
+            if (!Arrays.equals(magic, FeatureRecorder.MAGIC)) {
+                throw new IOException("Not a DeeJ feature log: " + file);
+            }
+            int version = header.getInt();
+            if (version != FeatureRecorder.VERSION) {
+                throw new IOException("Unsupported feature log version " + version + ": " + file);
+            }
+            width = header.getInt();
+            if (width < 1) {
+                throw new IOException("Corrupt feature log, record width " + width + ": " + file);
+            }
+            sampleRate = header.getFloat();
+            fftSize = header.getInt();
+            hopSize = header.getInt();
+            header.getInt();
+            startMillis = header.getLong();
+            recordBytes = FeatureRecorder.recordBytes(width);
+            // The header count is written after each record, the file length bounds it if it was cut
+            long stored = (channel.size() - FeatureRecorder.HEADER_BYTES) / recordBytes;
+            count = Math.min(header.getLong(), stored);
+        } catch (IOException e) {
+            raf.close();
+            throw e;
+        }
+    }
+
+    // Copies the next record into record (Features layout, extra fields ignored, missing ones
+    // left as they are), returns false at the end of the log
+    public boolean next(float[] record) throws IOException {
+        if (position >= count) {
+            return false;
+        }
+        long index = position / CHUNK_RECORDS;
+        if (index != chunkIndex) {
+            long first = index * CHUNK_RECORDS;
+            long records = Math.min(CHUNK_RECORDS, count - first);
+            chunk = channel.map(FileChannel.MapMode.READ_ONLY,
+                    FeatureRecorder.HEADER_BYTES + first * recordBytes, records * recordBytes);
+            chunk.order(ByteOrder.LITTLE_ENDIAN);
+            chunkIndex = index;
+        }
+        int offset = (int) (position % CHUNK_RECORDS) * recordBytes;
+        timestamp = chunk.getLong(offset);
+        active = (chunk.getInt(offset + 8) & FeatureRecorder.ACTIVE_FLAG) != 0;
+        int fields = Math.min(width, record.length);
+        for (int i = 0; i < fields; i++) {
+            record[i] = chunk.getFloat(offset + 12 + 4 * i);
+        }
+        position++;
+        return true;
+    }
+
+    // Back to the first record
+    public void rewind() {
+        position = 0;
+    }
+
+    // Nanoseconds between the first record and the one last read
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    // Whether the signal was above the noise floor at the record last read
+    public boolean isActive() {
+        return active;
+    }
+
+    public long getRecordCount() {
+        return count;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public float getSampleRate() {
+        return sampleRate;
+    }
+
+    public int getFftSize() {
+        return fftSize;
+    }
+
+    public int getHopSize() {
+        return hopSize;
+    }
+
+    // Wall clock time the session was recorded, in ms since the epoch
+    public long getStartMillis() {
+        return startMillis;
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    @Override
+    public void close() {
+        try {
+            raf.close();
+        } catch (IOException e) {
+            // Read only, nothing to lose
+        }
+    }
+}
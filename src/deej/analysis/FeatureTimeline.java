@@ -0,0 +1,185 @@
+/*
+ * DeeJ - An ImageJ plugin detects sound levels of mic or computer and triggers Fiji commands on the currently active window based on a defined threshold.
+ * 
+ * License: This software is provided under the GNU General Public License (GPL) version 3.
+ * Copyright (c) 2025 Hugo LE GUENNO
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package deej.analysis;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import deej.audio.AudioSource;
+import deej.audio.PcmDecoder;
+
+/**
+ * Features of a whole recording sampled at a fixed video frame rate, for offline rendering.
+ * The source is read once as fast as it decodes, through the same spectral, onset and tempo
+ * analysis as the live plugin. Each frame holds one Features record: peak and RMS of the samples
+ * in the frame, the bands of the last hop that ended in it, the largest flux, the onsets and
+ * beats counted during it, and the beat phase and tempo at its end.
+ */
+public class FeatureTimeline {
+
+    private static final int BLOCK_FRAMES = 4096;
+
+    private final double frameRate;
+    private float[] records;
+    private boolean[] active;
+    private int frameCount;
+
+    private FeatureTimeline(double frameRate) {
+        this.frameRate = frameRate;
+        records = new float[1024 * Features.WIDTH];
+        active = new boolean[1024];
+    }
+
+    // Opens, reads to the end and closes source; channel -1 averages all channels
+    public static FeatureTimeline analyze(AudioSource source, double frameRate, int fftSize, int hopSize,
+            int channel) throws IOException {
+        if (frameRate <= 0) {
+            throw new IllegalArgumentException("Frame rate must be positive: " + frameRate);
+        }
+        FeatureTimeline timeline = new FeatureTimeline(frameRate);
+        try {
+            source.open();
+            timeline.read(source, fftSize, hopSize, channel);
+        } finally {
+            source.close();
+        }
+        return timeline;
+    }
+
+    private void read(AudioSource source, int fftSize, int hopSize, int channel) throws IOException {
+        PcmDecoder decoder = new PcmDecoder(source.getFormat());
+        decoder.setChannel(channel);
+        float sampleRate = source.getFormat().getSampleRate();
+        int frameSize = source.getFormat().getFrameSize();
+        SpectralAnalyzer analyzer = new SpectralAnalyzer(fftSize, hopSize, sampleRate);
+        OnsetDetector onsetDetector = new OnsetDetector(sampleRate);
+        TempoEstimator tempo = new TempoEstimator(sampleRate);
+
+        byte[] bytes = new byte[BLOCK_FRAMES * frameSize];
+        float[] samples = new float[BLOCK_FRAMES];
+        float[] hop = new float[hopSize];
+        float[] spectrum = new float[Features.WIDTH];
+        float[] record = new float[Features.WIDTH];
+        int hopFill = 0;
+        int pending = 0;
+        long sample = 0;
+        // Last sample, exclusive, of the video frame being filled
+        long frameEnd = frameEnd(0, sampleRate);
+        int frameSamples = 0;
+        double frameSquares = 0;
+        boolean touched = false;
+
+        int n;
+        while ((n = source.read(bytes, pending, bytes.length - pending)) >= 0) {
+            int available = pending + n;
+            int frames = available / frameSize;
+            if (frames == 0) {
+                pending = available;
+                continue;
+            }
+            decoder.decode(bytes, frames * frameSize, samples);
+            pending = available - frames * frameSize;
+            System.arraycopy(bytes, frames * frameSize, bytes, 0, pending);
+
+            for (int i = 0; i < frames; i++) {
+                float v = samples[i];
+                record[Features.PEAK] = Math.max(record[Features.PEAK], Math.abs(v));
+                frameSquares += v * v;
+                frameSamples++;
+                hop[hopFill++] = v;
+                if (hopFill == hopSize) {
+                    hopFill = 0;
+                    analyzer.next(hop, 0, spectrum);
+                    for (int j = 0; j < hopSize; j++) {
+                        if (onsetDetector.process(hop[j])) {
+                            record[Features.ONSET]++;
+                            tempo.onOnset(onsetDetector.getSampleCount());
+                        }
+                    }
+                    record[Features.BEAT] += tempo.update(onsetDetector.getSampleCount(), onsetDetector.isActive());
+                    // Bands follow the last hop, flux keeps the largest change so short hits are not lost
+                    record[Features.BASS] = spectrum[Features.BASS];
+                    record[Features.MID] = spectrum[Features.MID];
+                    record[Features.TREBLE] = spectrum[Features.TREBLE];
+                    record[Features.FLUX] = touched ? Math.max(record[Features.FLUX], spectrum[Features.FLUX])
+                            : spectrum[Features.FLUX];
+                    touched = true;
+                }
+                if (++sample == frameEnd) {
+                    record[Features.RMS] = (float) Math.sqrt(frameSquares / frameSamples);
+                    record[Features.BEAT_PHASE] = (float) tempo.getPhase(onsetDetector.getSampleCount());
+                    record[Features.TEMPO] = (float) tempo.getBpm();
+                    add(record, onsetDetector.isActive());
+                    // Bands carry over into frames shorter than a hop, counters start again
+                    record[Features.PEAK] = 0;
+                    record[Features.ONSET] = 0;
+                    record[Features.BEAT] = 0;
+                    touched = false;
+                    frameSquares = 0;
+                    frameSamples = 0;
+                    frameEnd = frameEnd(frameCount, sampleRate);
+                }
+            }
+        }
+        if (frameSamples > 0) {
+            record[Features.RMS] = (float) Math.sqrt(frameSquares / frameSamples);
+            record[Features.BEAT_PHASE] = (float) tempo.getPhase(onsetDetector.getSampleCount());
+            record[Features.TEMPO] = (float) tempo.getBpm();
+            add(record, onsetDetector.isActive());
+        }
+    }
+
+    // Rounded from the frame index so the frame boundaries never drift from the audio clock
+    private long frameEnd(int frame, float sampleRate) {
+        return Math.round((frame + 1) * (double) sampleRate / frameRate);
+    }
+
+    private void add(float[] record, boolean isActive) {
+        if (frameCount == active.length) {
+            active = Arrays.copyOf(active, frameCount * 2);
+            records = Arrays.copyOf(records, frameCount * 2 * Features.WIDTH);
+        }
+        System.arraycopy(record, 0, records, frameCount * Features.WIDTH, Features.WIDTH);
+        active[frameCount++] = isActive;
+    }
+
+    public double getFrameRate() {
+        return frameRate;
+    }
+
+    public int getFrameCount() {
+        return frameCount;
+    }
+
+    public double getDurationSeconds() {
+        return frameCount / frameRate;
+    }
+
+    // One of the Features indices for frame, 0 based
+    public float get(int frame, int feature) {
+        return records[frame * Features.WIDTH + feature];
+    }
+
+    // False while the signal sits under the adaptive noise floor, the plugin shows no level then
+    public boolean isActive(int frame) {
+        return active[frame];
+    }
+}
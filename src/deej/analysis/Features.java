@@ -0,0 +1,50 @@
+/*
+ * DeeJ - An ImageJ plugin detects sound levels of mic or computer and triggers Fiji commands on the currently active window based on a defined threshold.
+ * 
+ * License: This software is provided under the GNU General Public License (GPL) version 3.
+ * Copyright (c) 2025 Hugo LE GUENNO
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package deej.analysis;
+
+/**
+ * Layout of the per-block feature record carried through FeatureRingBuffer.
+ */
+public final class Features {
+
+    // Absolute peak of the block, 0-1
+    public static final int PEAK = 0;
+    // Root mean square of the block, 0-1
+    public static final int RMS = 1;
+    // Spectral band levels of the last hop, a full-scale sine in the band reads 1
+    public static final int BASS = 2;
+    public static final int MID = 3;
+    public static final int TREBLE = 4;
+    // Positive magnitude change since the previous hop, same scale as the bands
+    public static final int FLUX = 5;
+    // Number of onsets and of beats detected during the block
+    public static final int ONSET = 6;
+    public static final int BEAT = 7;
+    // Position inside the current beat at the end of the block, 0-1
+    public static final int BEAT_PHASE = 8;
+    // Current tempo estimate in beats per minute
+    public static final int TEMPO = 9;
+
+    public static final int WIDTH = 10;
+
+    private Features() {
+    }
+}
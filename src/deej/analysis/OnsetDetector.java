@@ -0,0 +1,148 @@
+/*
+ * DeeJ - An ImageJ plugin detects sound levels of mic or computer and triggers Fiji commands on the currently active window based on a defined threshold.
+ * 
+ * License: This software is provided under the GNU General Public License (GPL) version 3.
+ * Copyright (c) 2025 Hugo LE GUENNO
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package deej.analysis;
+
+/**
+ * Incremental onset detector, O(1) per sample with no history buffer.
+ * A fast attack/release envelope is compared to an adaptive threshold (slow mean plus k mean deviations),
+ * and an onset is reported at most once per refractory period. A slowly rising minimum tracks the noise
+ * floor so hiss and hum are recognised as silence whatever the input gain, up to a ceiling of -40 dBFS
+ * so a sustained sound (a drone, a pad, a test tone) is never taken for noise however long it lasts.
+ */
+public class OnsetDetector {
+
+    // Ignore anything below about -80 dBFS even when the room is very quiet
+    private static final float ABSOLUTE_FLOOR = 1e-4f;
+    // Highest level the noise floor rises to, -40 dBFS; anything steady above twice this stays active
+    private static final float MAX_NOISE_FLOOR = 1e-2f;
+
+    private final float attack;
+    private final float release;
+    private final float meanRate;
+    private final float floorRise;
+    private final int refractorySamples;
+    private volatile float sensitivity;
+
+    private float envelope;
+    private float mean;
+    private float deviation;
+    private float noiseFloor = ABSOLUTE_FLOOR;
+    private int samplesSinceOnset;
+    private boolean armed = true;
+    private long sampleCount;
+    private long lastOnsetSample = -1;
+
+    public OnsetDetector(float sampleRate) {
+        this(sampleRate, 1.5f, 100);
+    }
+
+    // sensitivity is the number of mean deviations above the mean an envelope must reach
+    public OnsetDetector(float sampleRate, float sensitivity, double refractoryMs) {
+        attack = coefficient(sampleRate, 1);
+        release = coefficient(sampleRate, 60);
+        meanRate = coefficient(sampleRate, 500);
+        floorRise = coefficient(sampleRate, 5000);
+        refractorySamples = (int) (sampleRate * refractoryMs / 1000);
+        this.sensitivity = sensitivity;
+        samplesSinceOnset = refractorySamples;
+    }
+
+    // One pole smoothing coefficient for the given time constant
+    private static float coefficient(float sampleRate, double ms) {
+        return (float) (1 - Math.exp(-1000.0 / (ms * sampleRate)));
+    }
+
+    public void setSensitivity(float sensitivity) {
+        this.sensitivity = sensitivity;
+    }
+
+    // Returns true on the sample where an onset is detected
+    public boolean process(float sample) {
+        float rectified = Math.abs(sample);
+        envelope += (rectified > envelope ? attack : release) * (rectified - envelope);
+
+        float threshold = mean + sensitivity * deviation;
+        mean += meanRate * (envelope - mean);
+        deviation += meanRate * (Math.abs(envelope - mean) - deviation);
+
+        if (envelope < noiseFloor) {
+            noiseFloor = Math.max(ABSOLUTE_FLOOR, envelope);
+        } else {
+            noiseFloor = Math.min(MAX_NOISE_FLOOR, noiseFloor + floorRise * (envelope - noiseFloor));
+        }
+
+        sampleCount++;
+        if (samplesSinceOnset < refractorySamples) {
+            samplesSinceOnset++;
+        }
+        boolean above = envelope > threshold && envelope > 2 * noiseFloor;
+        if (above && armed && samplesSinceOnset >= refractorySamples) {
+            armed = false;
+            samplesSinceOnset = 0;
+            lastOnsetSample = sampleCount;
+            return true;
+        }
+        if (!above) {
+            armed = true; // Re-arm once the envelope has dropped back under the threshold
+        }
+        return false;
+    }
+
+    // Number of onsets found in the span, usually 0 or 1 for a hop
+    public int process(float[] samples, int offset, int length) {
+        int onsets = 0;
+        for (int i = offset; i < offset + length; i++) {
+            if (process(samples[i])) {
+                onsets++;
+            }
+        }
+        return onsets;
+    }
+
+    // False while the envelope sits on the noise floor
+    public boolean isActive() {
+        return envelope > 2 * noiseFloor;
+    }
+
+    public float getEnvelope() {
+        return envelope;
+    }
+
+    public long getSampleCount() {
+        return sampleCount;
+    }
+
+    // Sample index of the last onset, -1 before the first one
+    public long getLastOnsetSample() {
+        return lastOnsetSample;
+    }
+
+    public void reset() {
+        envelope = 0;
+        mean = 0;
+        deviation = 0;
+        noiseFloor = ABSOLUTE_FLOOR;
+        samplesSinceOnset = refractorySamples;
+        armed = true;
+        sampleCount = 0;
+        lastOnsetSample = -1;
+    }
+}
@@ -0,0 +1,146 @@
+/*
+ * DeeJ - An ImageJ plugin detects sound levels of mic or computer and triggers Fiji commands on the currently active window based on a defined threshold.
+ * 
+ * License: This software is provided under the GNU General Public License (GPL) version 3.
+ * Copyright (c) 2025 Hugo LE GUENNO
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package deej.analysis;
+
+import deej.audio.SampleRingBuffer;
+
+/**
+ * Streaming short-time spectrum: every hop a Hann-windowed frame is transformed and reduced to
+ * bass/mid/treble band levels and spectral flux. All buffers are allocated in the constructor.
+ */
+public class SpectralAnalyzer {
+
+    private final FFT fft;
+    private final int fftSize;
+    private final int hopSize;
+    private final float[] window;
+    private final float[] history;
+    private final float[] re;
+    private final float[] im;
+    private final float[] magnitude;
+    private final float[] previousMagnitude;
+    private final int bassEnd;
+    private final int midEnd;
+    private final int nyquistBin;
+    // Scales band levels so a full-scale sine reads 1.0
+    private final float normalization;
+
+    public SpectralAnalyzer(int fftSize, int hopSize, float sampleRate) {
+        if (hopSize < 1 || hopSize > fftSize) {
+            throw new IllegalArgumentException("Hop size must be between 1 and the FFT size: " + hopSize);
+        }
+        this.fft = new FFT(fftSize);
+        this.fftSize = fftSize;
+        this.hopSize = hopSize;
+        window = new float[fftSize];
+        double windowEnergy = 0;
+        for (int i = 0; i < fftSize; i++) {
+            window[i] = (float) (0.5 - 0.5 * Math.cos(2 * Math.PI * i / fftSize));
+            windowEnergy += window[i] * window[i];
+        }
+        history = new float[fftSize];
+        re = new float[fftSize];
+        im = new float[fftSize];
+        nyquistBin = fftSize / 2;
+        magnitude = new float[nyquistBin + 1];
+        previousMagnitude = new float[nyquistBin + 1];
+        double binHz = sampleRate / fftSize;
+        bassEnd = Math.min(nyquistBin, Math.max(1, (int) Math.round(Band.BASS_MAX_HZ / binHz)));
+        midEnd = Math.min(nyquistBin, Math.max(bassEnd, (int) Math.round(Band.MID_MAX_HZ / binHz)));
+        normalization = (float) (1.0 / Math.sqrt(fftSize * windowEnergy / 4));
+    }
+
+    public int getHopSize() {
+        return hopSize;
+    }
+
+    public int getFftSize() {
+        return fftSize;
+    }
+
+    // Consumes one hop from the ring when available and writes BASS, MID, TREBLE and FLUX into record
+    public boolean next(SampleRingBuffer ring, float[] record) {
+        if (ring.available() < hopSize) {
+            return false;
+        }
+        System.arraycopy(history, hopSize, history, 0, fftSize - hopSize);
+        ring.read(history, fftSize - hopSize, hopSize);
+        analyze(record);
+        return true;
+    }
+
+    // Same as next() for callers that already hold the hop in an array
+    public void next(float[] hop, int offset, float[] record) {
+        System.arraycopy(history, hopSize, history, 0, fftSize - hopSize);
+        System.arraycopy(hop, offset, history, fftSize - hopSize, hopSize);
+        analyze(record);
+    }
+
+    private void analyze(float[] record) {
+        for (int i = 0; i < fftSize; i++) {
+            re[i] = history[i] * window[i];
+            im[i] = 0;
+        }
+        fft.transform(re, im);
+
+        double bass = 0;
+        double mid = 0;
+        double treble = 0;
+        double flux = 0;
+        // DC is left out of every band
+        for (int k = 1; k <= nyquistBin; k++) {
+            float power = re[k] * re[k] + im[k] * im[k];
+            float mag = (float) Math.sqrt(power);
+            float rise = mag - previousMagnitude[k];
+            if (rise > 0) {
+                flux += rise;
+            }
+            previousMagnitude[k] = mag;
+            magnitude[k] = mag;
+            if (k < bassEnd) {
+                bass += power;
+            } else if (k < midEnd) {
+                mid += power;
+            } else {
+                treble += power;
+            }
+        }
+        record[Features.BASS] = (float) Math.sqrt(bass) * normalization;
+        record[Features.MID] = (float) Math.sqrt(mid) * normalization;
+        record[Features.TREBLE] = (float) Math.sqrt(treble) * normalization;
+        record[Features.FLUX] = (float) flux * normalization;
+    }
+
+    // Time-domain frame of the last hop, the newest hopSize samples are at the end, read only
+    public float[] getHistory() {
+        return history;
+    }
+
+    // Magnitude spectrum of the last hop, bins 0 to fftSize / 2, read only
+    public float[] getMagnitude() {
+        return magnitude;
+    }
+
+    public void reset() {
+        java.util.Arrays.fill(history, 0);
+        java.util.Arrays.fill(previousMagnitude, 0);
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ * DeeJ - An ImageJ plugin detects sound levels of mic or computer and triggers Fiji commands on the currently active window based on a defined threshold.
+ * 
+ * License: This software is provided under the GNU General Public License (GPL) version 3.
+ * Copyright (c) 2025 Hugo LE GUENNO
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package deej.analysis;
+
+/**
+ * Follows the tempo from onset times and runs a beat clock locked to it, O(1) per onset and per update.
+ * Inter-onset intervals are folded into the 60-180 BPM octave and averaged; each onset then pulls the
+ * beat phase towards zero, like a simple phase locked loop. The clock only counts beats once two
+ * onsets have set the period, and stops counting while the signal is silent or after LOCK_PERIODS
+ * beats without an onset; the next onsets lock it again.
+ */
+public class TempoEstimator {
+
+    private static final double MIN_BPM = 60;
+    private static final double MAX_BPM = 180;
+    private static final double PERIOD_SMOOTHING = 0.2;
+    private static final double PHASE_CORRECTION = 0.3;
+    // Beats the clock runs on by itself after the last onset
+    private static final int LOCK_PERIODS = 8;
+
+    private final float sampleRate;
+    private double periodSamples;
+    private double lastBeatSample;
+    private long lastOnsetSample = -1;
+    private long lastBeatIndex;
+    // Onset intervals folded into the period since the clock last lost its lock
+    private int intervals;
+
+    public TempoEstimator(float sampleRate) {
+        this.sampleRate = sampleRate;
+        reset();
+    }
+
+    public void onOnset(long sample) {
+        if (lastOnsetSample >= 0 && !isLocked(sample)) {
+            // Too long since the last onset: the gap says nothing about the tempo, start over from this one
+            intervals = 0;
+            lastOnsetSample = -1;
+        }
+        if (lastOnsetSample < 0) {
+            // The first onset sets the beat, the second one the period
+            lastBeatSample = sample;
+        } else {
+            double interval = sample - lastOnsetSample;
+            double minPeriod = sampleRate * 60 / MAX_BPM;
+            double maxPeriod = sampleRate * 60 / MIN_BPM;
+            while (interval > maxPeriod) {
+                interval /= 2;
+            }
+            while (interval < minPeriod && interval > 0) {
+                interval *= 2;
+            }
+            if (interval > 0) {
+                // The first interval replaces the default period, later ones are averaged in
+                periodSamples = intervals == 0 ? interval
+                        : periodSamples + PERIOD_SMOOTHING * (interval - periodSamples);
+                intervals++;
+            }
+        }
+        lastOnsetSample = sample;
+
+        // Signed phase error in periods, -0.5 to 0.5, nudges the beat clock onto the onset
+        double error = (sample - lastBeatSample) / periodSamples;
+        error -= Math.floor(error + 0.5);
+        lastBeatSample += PHASE_CORRECTION * error * periodSamples;
+    }
+
+    // Advances the beat clock to the given sample and returns the number of beats crossed; none are
+    // counted before the period is known, after the lock timed out or while the signal is not active
+    public int update(long sample, boolean active) {
+        boolean counting = active && intervals > 0 && isLocked(sample);
+        int beats = 0;
+        while (sample - lastBeatSample >= periodSamples) {
+            lastBeatSample += periodSamples;
+            if (counting) {
+                lastBeatIndex++;
+                beats++;
+            }
+        }
+        return beats;
+    }
+
+    // True while the last onset is recent enough for the clock to keep the beat
+    private boolean isLocked(long sample) {
+        return lastOnsetSample >= 0 && sample - lastOnsetSample <= LOCK_PERIODS * periodSamples;
+    }
+
+    // Position inside the current beat, 0 on the beat up to 1 just before the next
+    public double getPhase(long sample) {
+        double phase = (sample - lastBeatSample) / periodSamples;
+        return phase - Math.floor(phase);
+    }
+
+    public double getBpm() {
+        return sampleRate * 60 / periodSamples;
+    }
+
+    public long getBeatIndex() {
+        return lastBeatIndex;
+    }
+
+    public void reset() {
+        periodSamples = sampleRate * 60 / 120;
+        lastBeatSample = 0;
+        lastOnsetSample = -1;
+        lastBeatIndex = 0;
+        intervals = 0;
+    }
+}
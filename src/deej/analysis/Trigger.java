@@ -0,0 +1,46 @@
+/*
+ * DeeJ - An ImageJ plugin detects sound levels of mic or computer and triggers Fiji commands on the currently active window based on a defined threshold.
+ * 
+ * License: This software is provided under the GNU General Public License (GPL) version 3.
+ * Copyright (c) 2025 Hugo LE GUENNO
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package deej.analysis;
+
+/**
+ * What makes an action fire: the raw level of its band, detected onsets, or beats of the tempo clock.
+ */
+public enum Trigger {
+
+    LEVEL("Level"),
+    ONSET("Onset"),
+    BEAT("Beat");
+
+    private final String label;
+
+    Trigger(String label) {
+        this.label = label;
+    }
+
+    public String getLabel() {
+        return label;
+    }
+
+    // Whether a block with these counts fires an onset or beat action, level actions never fire
+    public boolean fires(int onsets, int beats) {
+        return (this == ONSET && onsets > 0) || (this == BEAT && beats > 0);
+    }
+}
@@ -0,0 +1,141 @@
+/*
+ * DeeJ - An ImageJ plugin detects sound levels of mic or computer and triggers Fiji commands on the currently active window based on a defined threshold.
+ * 
+ * License: This software is provided under the GNU General Public License (GPL) version 3.
+ * Copyright (c) 2025 Hugo LE GUENNO
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package deej.audio;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import javax.sound.sampled.AudioFormat;
+
+import deej.analysis.Features;
+import deej.metrics.LatencyMetrics;
+
+/**
+ * Dedicated capture thread body: reads an AudioSource, decodes the PCM with PcmDecoder and pushes
+ * samples and per-block features into preallocated rings for the analysis stage.
+ * Nothing is allocated inside the loop and the only blocking call is the source read itself.
+ */
+public class AudioCapture implements Runnable {
+
+    private final AudioSource source;
+    private final SampleRingBuffer samples;
+    private final FeatureRingBuffer features;
+    private final int blockFrames;
+    private volatile boolean running;
+    private volatile boolean finished;
+    private volatile Exception failure;
+    private Thread thread;
+    private LatencyMetrics metrics;
+    private int channel = -1;
+
+    public AudioCapture(AudioSource source, SampleRingBuffer samples, FeatureRingBuffer features, int blockFrames) {
+        this.source = source;
+        this.samples = samples;
+        this.features = features;
+        this.blockFrames = blockFrames;
+    }
+
+    // Optional, records the age of every block once it is in the rings
+    public void setMetrics(LatencyMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    // Input channel fed to the analysis, -1 averages all channels
+    public void setChannel(int channel) {
+        this.channel = channel;
+    }
+
+    // Opens the source on the calling thread so errors show up immediately, then starts capturing
+    public void start() throws IOException {
+        source.open();
+        if (!PcmDecoder.isSupported(source.getFormat())) {
+            source.close();
+            throw new IOException("Unsupported sample format: " + source.getFormat());
+        }
+        running = true;
+        finished = false;
+        thread = new Thread(this, "DeeJ capture");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MAX_PRIORITY);
+        thread.start();
+    }
+
+    public void stop() {
+        running = false;
+        if (thread != null) {
+            try {
+                thread.join(500);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            thread = null;
+        }
+    }
+
+    @Override
+    public void run() {
+        AudioFormat format = source.getFormat();
+        PcmDecoder decoder = new PcmDecoder(format);
+        decoder.setChannel(channel);
+        byte[] buffer = new byte[blockFrames * format.getFrameSize()];
+        ByteBuffer bytes = ByteBuffer.wrap(buffer);
+        float[] block = new float[blockFrames];
+        float[] record = new float[features.width()];
+        try {
+            while (running) {
+                int bytesRead = source.read(buffer, 0, buffer.length);
+                if (bytesRead < 0) {
+                    break; // End of file or synthetic signal
+                }
+                long timestamp = System.nanoTime();
+                int frames = decoder.decode(bytes, bytesRead, block);
+                if (frames == 0) {
+                    continue;
+                }
+                record[Features.PEAK] = decoder.getPeak();
+                record[Features.RMS] = decoder.getRms();
+                samples.write(block, 0, frames);
+                features.write(timestamp, record);
+                if (metrics != null) {
+                    metrics.record(LatencyMetrics.Stage.DECODED, timestamp);
+                }
+            }
+        } catch (IOException e) {
+            failure = e;
+        } finally {
+            source.close();
+            finished = true;
+            running = false;
+        }
+    }
+
+    public boolean isFinished() {
+        return finished;
+    }
+
+    public Exception getFailure() {
+        return failure;
+    }
+
+    public AudioSource getSource() {
+        return source;
+    }
+}
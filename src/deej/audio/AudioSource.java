@@ -0,0 +1,47 @@
+/*
+ * DeeJ - An ImageJ plugin detects sound levels of mic or computer and triggers Fiji commands on the currently active window based on a defined threshold.
+ *
+ * License: This software is provided under the GNU General Public License (GPL) version 3.
+ * Copyright (c) 2025 Hugo LE GUENNO
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package deej.audio;
+
+import java.io.IOException;
+
+import javax.sound.sampled.AudioFormat;
+
+/**
+ * A source of interleaved PCM bytes feeding the DeeJ pipeline.
+ * Implementations: live line, audio file, synthetic signal.
+ */
+public interface AudioSource extends AutoCloseable {
+
+    // Opens the underlying line or stream, must be called before read()
+    void open() throws IOException;
+
+    // Format of the bytes returned by read(), valid after open()
+    AudioFormat getFormat();
+
+    // Blocks until some bytes are available, returns -1 at end of stream
+    int read(byte[] buffer, int offset, int length) throws IOException;
+
+    // Human readable description, shown in the log and the source dialog
+    String getName();
+
+    @Override
+    void close();
+}
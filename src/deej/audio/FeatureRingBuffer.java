@@ -0,0 +1,122 @@
+/*
+ * DeeJ - An ImageJ plugin detects sound levels of mic or computer and triggers Fiji commands on the currently active window based on a defined threshold.
+ * 
+ * License: This software is provided under the GNU General Public License (GPL) version 3.
+ * Copyright (c) 2025 Hugo LE GUENNO
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package deej.audio;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Preallocated single-producer/single-consumer ring of fixed-width feature records, each with a nanoTime stamp.
+ * Same ownership rules as SampleRingBuffer: a record that finds the ring full is dropped and counted as overrun.
+ */
+public class FeatureRingBuffer {
+
+    private final float[] data;
+    private final long[] timestamps;
+    private final int width;
+    private final int mask;
+    private final AtomicLong writeIndex = new AtomicLong();
+    private final AtomicLong readIndex = new AtomicLong();
+    private final AtomicLong overrunRecords = new AtomicLong();
+    private volatile Thread waitingConsumer;
+    private long lastReadTimestamp;
+
+    public FeatureRingBuffer(int minRecords, int width) {
+        int capacity = Integer.highestOneBit(Math.max(2, minRecords - 1)) << 1;
+        this.width = width;
+        data = new float[capacity * width];
+        timestamps = new long[capacity];
+        mask = capacity - 1;
+    }
+
+    public int width() {
+        return width;
+    }
+
+    public int available() {
+        return (int) (writeIndex.get() - readIndex.get());
+    }
+
+    // Producer side, false when the record was dropped
+    public boolean write(long timestamp, float[] record) {
+        long w = writeIndex.get();
+        if (w - readIndex.get() >= timestamps.length) {
+            overrunRecords.incrementAndGet();
+            return false;
+        }
+        int slot = (int) (w & mask);
+        System.arraycopy(record, 0, data, slot * width, width);
+        timestamps[slot] = timestamp;
+        // A full store: the waiter read below must not be ordered before it, or a consumer that just
+        // checked available() could park unseen until its timeout
+        writeIndex.set(w + 1);
+        Thread waiter = waitingConsumer;
+        if (waiter != null) {
+            LockSupport.unpark(waiter);
+        }
+        return true;
+    }
+
+    // Consumer side, false when the ring is empty
+    public boolean read(float[] record) {
+        long r = readIndex.get();
+        if (r == writeIndex.get()) {
+            return false;
+        }
+        int slot = (int) (r & mask);
+        System.arraycopy(data, slot * width, record, 0, width);
+        lastReadTimestamp = timestamps[slot];
+        readIndex.lazySet(r + 1);
+        return true;
+    }
+
+    // Capture timestamp of the record returned by the last successful read()
+    public long getLastReadTimestamp() {
+        return lastReadTimestamp;
+    }
+
+    // Consumer side, parks until a record is available or the timeout expires
+    public boolean await(long timeoutNanos) {
+        long deadline = System.nanoTime() + timeoutNanos;
+        while (available() == 0) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                return false;
+            }
+            waitingConsumer = Thread.currentThread();
+            if (available() == 0) {
+                LockSupport.parkNanos(this, remaining);
+            }
+            waitingConsumer = null;
+        }
+        return true;
+    }
+
+    public long getOverrunRecords() {
+        return overrunRecords.get();
+    }
+
+    // Only safe while neither side is running
+    public void clear() {
+        readIndex.set(writeIndex.get());
+        overrunRecords.set(0);
+    }
+}
@@ -0,0 +1,123 @@
+/*
+ * DeeJ - An ImageJ plugin detects sound levels of mic or computer and triggers Fiji commands on the currently active window based on a defined threshold.
+ * 
+ * License: This software is provided under the GNU General Public License (GPL) version 3.
+ * Copyright (c) 2025 Hugo LE GUENNO
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package deej.audio;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.locks.LockSupport;
+
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+import javax.sound.sampled.UnsupportedAudioFileException;
+
+/**
+ * Streams a WAV/AIFF file, either paced to real time or as fast as the pipeline reads.
+ */
+public class FileAudioSource implements AudioSource {
+
+    private final File file;
+    private final boolean realTime;
+    private AudioInputStream stream;
+    private AudioFormat format;
+    private long bytesDelivered;
+    private long startNanos;
+
+    public FileAudioSource(File file, boolean realTime) {
+        this.file = file;
+        this.realTime = realTime;
+    }
+
+    @Override
+    public void open() throws IOException {
+        AudioInputStream in;
+        try {
+            in = AudioSystem.getAudioInputStream(file);
+        } catch (UnsupportedAudioFileException e) {
+            throw new IOException("Unsupported audio file: " + file, e);
+        }
+        AudioFormat source = in.getFormat();
+        // PcmDecoder reads signed 16/24/32-bit and float PCM as is, let Java Sound convert anything else
+        if (!PcmDecoder.isSupported(source)) {
+            AudioFormat target = new AudioFormat(AudioFormat.Encoding.PCM_SIGNED, source.getSampleRate(),
+                    16, source.getChannels(), source.getChannels() * 2, source.getSampleRate(), false);
+            in = AudioSystem.getAudioInputStream(target, in);
+        }
+        stream = in;
+        format = in.getFormat();
+        bytesDelivered = 0;
+        startNanos = System.nanoTime();
+    }
+
+    @Override
+    public AudioFormat getFormat() {
+        return format;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+        if (stream == null) {
+            throw new IOException("File not open");
+        }
+        int frameSize = format.getFrameSize();
+        int bytesRead = stream.read(buffer, offset, length - length % frameSize);
+        if (bytesRead <= 0) {
+            return -1;
+        }
+        bytesDelivered += bytesRead;
+        if (realTime) {
+            // Wait until the wall clock has caught up with the audio we handed out
+            double bytesPerSecond = format.getFrameRate() * frameSize;
+            long dueNanos = startNanos + (long) (bytesDelivered * 1e9 / bytesPerSecond);
+            long waitNanos = dueNanos - System.nanoTime();
+            while (waitNanos > 0) {
+                LockSupport.parkNanos(waitNanos);
+                waitNanos = dueNanos - System.nanoTime();
+            }
+        }
+        return bytesRead;
+    }
+
+    // Length of the file in seconds, or -1 when the stream does not report it
+    public double getDurationSeconds() {
+        if (stream == null || stream.getFrameLength() == AudioSystem.NOT_SPECIFIED) {
+            return -1;
+        }
+        return stream.getFrameLength() / (double) format.getFrameRate();
+    }
+
+    @Override
+    public String getName() {
+        return "File: " + file.getName() + (realTime ? " (real time)" : " (fast)");
+    }
+
+    @Override
+    public void close() {
+        if (stream != null) {
+            try {
+                stream.close();
+            } catch (IOException e) {
+                // Nothing useful to do, the stream is discarded anyway
+            }
+            stream = null;
+        }
+    }
+}
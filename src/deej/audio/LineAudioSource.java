@@ -0,0 +1,126 @@
+/*
+ * DeeJ - An ImageJ plugin detects sound levels of mic or computer and triggers Fiji commands on the currently active window based on a defined threshold.
+ * 
+ * License: This software is provided under the GNU General Public License (GPL) version 3.
+ * Copyright (c) 2025 Hugo LE GUENNO
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package deej.audio;
+
+import java.io.IOException;
+
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioSystem;
+import javax.sound.sampled.DataLine;
+import javax.sound.sampled.LineUnavailableException;
+import javax.sound.sampled.Mixer;
+import javax.sound.sampled.TargetDataLine;
+
+/**
+ * Live capture from a TargetDataLine, with selectable mixer, format and line buffer size.
+ */
+public class LineAudioSource implements AudioSource {
+
+    public static final AudioFormat DEFAULT_FORMAT = new AudioFormat(44100, 16, 1, true, false);
+
+    private final String mixerName;
+    private final AudioFormat format;
+    private final int bufferBytes;
+    private TargetDataLine line;
+
+    // mixerName null means the system default mixer, bufferBytes <= 0 lets the line choose
+    public LineAudioSource(String mixerName, AudioFormat format, int bufferBytes) {
+        this.mixerName = mixerName;
+        this.format = format != null ? format : DEFAULT_FORMAT;
+        this.bufferBytes = bufferBytes;
+    }
+
+    public LineAudioSource() {
+        this(null, DEFAULT_FORMAT, 0);
+    }
+
+    // Names of the mixers able to capture in the given format
+    public static String[] getCaptureMixerNames(AudioFormat format) {
+        DataLine.Info info = new DataLine.Info(TargetDataLine.class, format);
+        java.util.List<String> names = new java.util.ArrayList<String>();
+        for (Mixer.Info mixerInfo : AudioSystem.getMixerInfo()) {
+            Mixer mixer = AudioSystem.getMixer(mixerInfo);
+            if (mixer.isLineSupported(info)) {
+                names.add(mixerInfo.getName());
+            }
+        }
+        return names.toArray(new String[0]);
+    }
+
+    @Override
+    public void open() throws IOException {
+        DataLine.Info info = new DataLine.Info(TargetDataLine.class, format);
+        try {
+            if (mixerName == null) {
+                line = (TargetDataLine) AudioSystem.getLine(info);
+            } else {
+                line = (TargetDataLine) AudioSystem.getMixer(findMixer(mixerName)).getLine(info);
+            }
+            if (bufferBytes > 0) {
+                line.open(format, bufferBytes);
+            } else {
+                line.open(format);
+            }
+        } catch (LineUnavailableException | IllegalArgumentException e) {
+            throw new IOException("Audio line unavailable: " + e.getMessage(), e);
+        }
+        line.start();
+    }
+
+    private static Mixer.Info findMixer(String name) throws IOException {
+        for (Mixer.Info mixerInfo : AudioSystem.getMixerInfo()) {
+            if (mixerInfo.getName().equals(name)) {
+                return mixerInfo;
+            }
+        }
+        throw new IOException("No such mixer: " + name);
+    }
+
+    @Override
+    public AudioFormat getFormat() {
+        return format;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+        if (line == null) {
+            throw new IOException("Line not open");
+        }
+        // Keep whole frames so the decoder never sees a split sample
+        int frameSize = format.getFrameSize();
+        int bytesRead = line.read(buffer, offset, length - length % frameSize);
+        return line.isOpen() ? bytesRead : -1;
+    }
+
+    @Override
+    public String getName() {
+        return "Line: " + (mixerName != null ? mixerName : "default") + " (" + format + ")";
+    }
+
+    @Override
+    public void close() {
+        if (line != null) {
+            line.stop();
+            line.close();
+            line = null;
+        }
+    }
+}
@@ -0,0 +1,321 @@
+/*
+ * DeeJ - An ImageJ plugin detects sound levels of mic or computer and triggers Fiji commands on the currently active window based on a defined threshold.
+ * 
+ * License: This software is provided under the GNU General Public License (GPL) version 3.
+ * Copyright (c) 2025 Hugo LE GUENNO
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package deej.audio;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.ShortBuffer;
+
+import javax.sound.sampled.AudioFormat;
+
+/**
+ * Decodes interleaved PCM (16, 24 or 32-bit signed integer, or 32-bit float, either byte order)
+ * from a ByteBuffer into one float channel: the average of all channels or a single selected one.
+ * Per-channel peak and RMS are gathered while decoding, each sample is read once. 16 and 32-bit data
+ * are read through typed buffer views so each sample is one plain load; nothing is allocated per call.
+ * The loops are written for the JIT's auto-vectorizer rather than the incubating Vector API, which the
+ * Java 8 baseline of ImageJ cannot use.
+ */
+public class PcmDecoder {
+
+    public enum SampleType { INT16, INT24, INT32, FLOAT32 }
+
+    private final SampleType type;
+    private final int channels;
+    private final ByteOrder order;
+    private final int frameSize;
+    private int channel = -1;
+
+    private final float[] peaks;
+    private final double[] sumSquares;
+    private int lastFrames;
+
+    // Views of the last buffer decoded, rebuilt only when another buffer comes in
+    private ByteBuffer viewSource;
+    private ByteBuffer wrapped;
+    private ShortBuffer shortView;
+    private IntBuffer intView;
+    private FloatBuffer floatView;
+
+    public PcmDecoder(AudioFormat format) {
+        type = sampleType(format);
+        channels = format.getChannels();
+        order = format.isBigEndian() ? ByteOrder.BIG_ENDIAN : ByteOrder.LITTLE_ENDIAN;
+        frameSize = format.getFrameSize();
+        peaks = new float[channels];
+        sumSquares = new double[channels];
+    }
+
+    // Throws IllegalArgumentException for formats the decoder cannot read
+    public static SampleType sampleType(AudioFormat format) {
+        AudioFormat.Encoding encoding = format.getEncoding();
+        int bits = format.getSampleSizeInBits();
+        if (encoding.equals(AudioFormat.Encoding.PCM_FLOAT) && bits == 32) {
+            return SampleType.FLOAT32;
+        }
+        if (encoding.equals(AudioFormat.Encoding.PCM_SIGNED)) {
+            switch (bits) {
+                case 16:
+                    return SampleType.INT16;
+                case 24:
+                    return SampleType.INT24;
+                case 32:
+                    return SampleType.INT32;
+                default:
+                    break;
+            }
+        }
+        throw new IllegalArgumentException("Unsupported PCM format: " + format);
+    }
+
+    public static boolean isSupported(AudioFormat format) {
+        try {
+            sampleType(format);
+            return true;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    public SampleType getSampleType() {
+        return type;
+    }
+
+    public int getChannels() {
+        return channels;
+    }
+
+    public int getFrameSize() {
+        return frameSize;
+    }
+
+    // Channel copied to the output, -1 averages all channels
+    public void setChannel(int channel) {
+        this.channel = channel < 0 || channel >= channels ? -1 : channel;
+    }
+
+    public int getChannel() {
+        return channel;
+    }
+
+    // Decodes the whole frames found between 0 and bytes in buffer into out, returns the frame count
+    public int decode(ByteBuffer buffer, int bytes, float[] out) {
+        int frames = Math.min(bytes / frameSize, out.length);
+        for (int c = 0; c < channels; c++) {
+            peaks[c] = 0;
+            sumSquares[c] = 0;
+        }
+        switch (type) {
+            case INT16:
+                decode16(view16(buffer), frames, out);
+                break;
+            case INT24:
+                decode24(buffer, frames, out);
+                break;
+            case INT32:
+                decode32(view32(buffer), frames, out);
+                break;
+            default:
+                decodeFloat(viewFloat(buffer), frames, out);
+                break;
+        }
+        lastFrames = frames;
+        return frames;
+    }
+
+    // Convenience for callers holding a byte array, wraps it once and reuses the views
+    public int decode(byte[] bytes, int length, float[] out) {
+        if (wrapped == null || wrapped.array() != bytes) {
+            wrapped = ByteBuffer.wrap(bytes);
+        }
+        return decode(wrapped, length, out);
+    }
+
+    private void bind(ByteBuffer buffer) {
+        if (viewSource != buffer) {
+            viewSource = buffer;
+            shortView = null;
+            intView = null;
+            floatView = null;
+        }
+    }
+
+    private ShortBuffer view16(ByteBuffer buffer) {
+        bind(buffer);
+        if (shortView == null) {
+            shortView = buffer.duplicate().order(order).asShortBuffer();
+        }
+        return shortView;
+    }
+
+    private IntBuffer view32(ByteBuffer buffer) {
+        bind(buffer);
+        if (intView == null) {
+            intView = buffer.duplicate().order(order).asIntBuffer();
+        }
+        return intView;
+    }
+
+    private FloatBuffer viewFloat(ByteBuffer buffer) {
+        bind(buffer);
+        if (floatView == null) {
+            floatView = buffer.duplicate().order(order).asFloatBuffer();
+        }
+        return floatView;
+    }
+
+    // Each channel is walked in its own strided loop with local accumulators and loop-invariant
+    // branches, a shape the JIT unrolls well; the mix is summed into out and scaled at the end
+
+    private void decode16(ShortBuffer samples, int frames, float[] out) {
+        final float scale = 1f / 32768f;
+        for (int c = 0; c < channels; c++) {
+            boolean mixing = channel < 0;
+            boolean write = mixing || c == channel;
+            boolean first = c == 0 || !mixing;
+            float peak = 0;
+            double sum = 0;
+            for (int f = 0, i = c; f < frames; f++, i += channels) {
+                float v = samples.get(i) * scale;
+                peak = Math.max(peak, Math.abs(v));
+                sum += v * v;
+                if (write) {
+                    out[f] = first ? v : out[f] + v;
+                }
+            }
+            peaks[c] = peak;
+            sumSquares[c] = sum;
+        }
+        finishMix(frames, out);
+    }
+
+    // Turns the channel sum into an average when mixing
+    private void finishMix(int frames, float[] out) {
+        if (channel < 0 && channels > 1) {
+            float inverse = 1f / channels;
+            for (int f = 0; f < frames; f++) {
+                out[f] *= inverse;
+            }
+        }
+    }
+
+    private void decode24(ByteBuffer bytes, int frames, float[] out) {
+        final float scale = 1f / 8388608f;
+        boolean bigEndian = order == ByteOrder.BIG_ENDIAN;
+        for (int f = 0, i = 0; f < frames; f++) {
+            float mix = 0;
+            float selected = 0;
+            for (int c = 0; c < channels; c++, i += 3) {
+                int b0 = bytes.get(i) & 0xff;
+                int b1 = bytes.get(i + 1) & 0xff;
+                int b2 = bytes.get(i + 2);
+                // Only the most significant byte keeps its sign, which extends the 24-bit value
+                int value = bigEndian ? (b0 << 24 >> 8) | (b1 << 8) | (b2 & 0xff) : (b2 << 16) | (b1 << 8) | b0;
+                float v = value * scale;
+                peaks[c] = Math.max(peaks[c], Math.abs(v));
+                sumSquares[c] += v * v;
+                mix += v;
+                if (c == channel) {
+                    selected = v;
+                }
+            }
+            out[f] = channel < 0 ? mix / channels : selected;
+        }
+    }
+
+    private void decode32(IntBuffer samples, int frames, float[] out) {
+        final float scale = 1f / 2147483648f;
+        for (int c = 0; c < channels; c++) {
+            boolean mixing = channel < 0;
+            boolean write = mixing || c == channel;
+            boolean first = c == 0 || !mixing;
+            float peak = 0;
+            double sum = 0;
+            for (int f = 0, i = c; f < frames; f++, i += channels) {
+                float v = samples.get(i) * scale;
+                peak = Math.max(peak, Math.abs(v));
+                sum += v * v;
+                if (write) {
+                    out[f] = first ? v : out[f] + v;
+                }
+            }
+            peaks[c] = peak;
+            sumSquares[c] = sum;
+        }
+        finishMix(frames, out);
+    }
+
+    private void decodeFloat(FloatBuffer samples, int frames, float[] out) {
+        for (int c = 0; c < channels; c++) {
+            boolean mixing = channel < 0;
+            boolean write = mixing || c == channel;
+            boolean first = c == 0 || !mixing;
+            float peak = 0;
+            double sum = 0;
+            for (int f = 0, i = c; f < frames; f++, i += channels) {
+                float v = samples.get(i);
+                peak = Math.max(peak, Math.abs(v));
+                sum += v * v;
+                if (write) {
+                    out[f] = first ? v : out[f] + v;
+                }
+            }
+            peaks[c] = peak;
+            sumSquares[c] = sum;
+        }
+        finishMix(frames, out);
+    }
+
+    // Stats of the last decode, per input channel
+    public float getPeak(int c) {
+        return peaks[c];
+    }
+
+    public float getRms(int c) {
+        return lastFrames == 0 ? 0 : (float) Math.sqrt(sumSquares[c] / lastFrames);
+    }
+
+    // Level of the decoded signal: the selected channel, or the loudest channel when mixing so
+    // out-of-phase stereo does not cancel out
+    public float getPeak() {
+        if (channel >= 0) {
+            return peaks[channel];
+        }
+        float peak = 0;
+        for (int c = 0; c < channels; c++) {
+            peak = Math.max(peak, peaks[c]);
+        }
+        return peak;
+    }
+
+    public float getRms() {
+        if (channel >= 0) {
+            return getRms(channel);
+        }
+        double sum = 0;
+        for (int c = 0; c < channels; c++) {
+            sum += sumSquares[c];
+        }
+        return lastFrames == 0 ? 0 : (float) Math.sqrt(sum / (lastFrames * (double) channels));
+    }
+}
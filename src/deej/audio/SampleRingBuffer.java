@@ -0,0 +1,116 @@
+/*
+ * DeeJ - An ImageJ plugin detects sound levels of mic or computer and triggers Fiji commands on the currently active window based on a defined threshold.
+ * 
+ * License: This software is provided under the GNU General Public License (GPL) version 3.
+ * Copyright (c) 2025 Hugo LE GUENNO
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package deej.audio;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Preallocated single-producer/single-consumer ring of float samples.
+ * No locks and no allocation after construction: the producer owns writeIndex, the consumer owns readIndex.
+ * Samples that do not fit are dropped and counted as overrun. The consumer waits for whole hops with await(),
+ * so starvation shows up as await() timing out rather than as short reads.
+ */
+public class SampleRingBuffer {
+
+    private final float[] data;
+    private final int mask;
+    private final AtomicLong writeIndex = new AtomicLong();
+    private final AtomicLong readIndex = new AtomicLong();
+    private final AtomicLong overrunSamples = new AtomicLong();
+    private volatile Thread waitingConsumer;
+
+    // Capacity is rounded up to a power of two so the index wrap is a mask
+    public SampleRingBuffer(int minCapacity) {
+        int capacity = Integer.highestOneBit(Math.max(2, minCapacity - 1)) << 1;
+        data = new float[capacity];
+        mask = capacity - 1;
+    }
+
+    public int capacity() {
+        return data.length;
+    }
+
+    public int available() {
+        return (int) (writeIndex.get() - readIndex.get());
+    }
+
+    // Producer side, returns the number of samples actually stored
+    public int write(float[] src, int offset, int length) {
+        long w = writeIndex.get();
+        int free = data.length - (int) (w - readIndex.get());
+        int n = Math.min(length, free);
+        if (n < length) {
+            overrunSamples.addAndGet(length - n);
+        }
+        int start = (int) (w & mask);
+        int first = Math.min(n, data.length - start);
+        System.arraycopy(src, offset, data, start, first);
+        System.arraycopy(src, offset + first, data, 0, n - first);
+        // A full store: the waiter read below must not be ordered before it, or a consumer that just
+        // checked available() could park unseen until its timeout
+        writeIndex.set(w + n);
+        Thread waiter = waitingConsumer;
+        if (waiter != null) {
+            LockSupport.unpark(waiter);
+        }
+        return n;
+    }
+
+    // Consumer side, returns the number of samples actually copied
+    public int read(float[] dst, int offset, int length) {
+        long r = readIndex.get();
+        int n = Math.min(length, (int) (writeIndex.get() - r));
+        int start = (int) (r & mask);
+        int first = Math.min(n, data.length - start);
+        System.arraycopy(data, start, dst, offset, first);
+        System.arraycopy(data, 0, dst, offset + first, n - first);
+        readIndex.lazySet(r + n);
+        return n;
+    }
+
+    // Consumer side, parks until count samples are available or the timeout expires
+    public boolean await(int count, long timeoutNanos) {
+        long deadline = System.nanoTime() + timeoutNanos;
+        while (available() < count) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                return false;
+            }
+            waitingConsumer = Thread.currentThread();
+            if (available() < count) {
+                LockSupport.parkNanos(this, remaining);
+            }
+            waitingConsumer = null;
+        }
+        return true;
+    }
+
+    public long getOverrunSamples() {
+        return overrunSamples.get();
+    }
+
+    // Only safe while neither side is running
+    public void clear() {
+        readIndex.set(writeIndex.get());
+        overrunSamples.set(0);
+    }
+}
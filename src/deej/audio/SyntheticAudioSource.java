@@ -0,0 +1,135 @@
+/*
+ * DeeJ - An ImageJ plugin detects sound levels of mic or computer and triggers Fiji commands on the currently active window based on a defined threshold.
+ * 
+ * License: This software is provided under the GNU General Public License (GPL) version 3.
+ * Copyright (c) 2025 Hugo LE GUENNO
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package deej.audio;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.locks.LockSupport;
+
+import javax.sound.sampled.AudioFormat;
+
+/**
+ * Deterministic test signal (sine, white noise, click train) as 16-bit mono PCM.
+ * Same parameters and seed always give the same bytes, so runs can be compared on machines without sound hardware.
+ */
+public class SyntheticAudioSource implements AudioSource {
+
+    public enum Waveform { SINE, NOISE, CLICKS }
+
+    private final Waveform waveform;
+    private final float sampleRate;
+    private final double frequency;
+    private final double amplitude;
+    private final long seed;
+    private final boolean realTime;
+    private final long totalFrames;
+
+    private AudioFormat format;
+    private Random random;
+    private double phase;
+    private long frame;
+    private long startNanos;
+    private boolean open;
+
+    // frequency is the tone pitch for SINE and the click rate for CLICKS, durationSeconds <= 0 runs forever
+    public SyntheticAudioSource(Waveform waveform, float sampleRate, double frequency, double amplitude,
+            long seed, boolean realTime, double durationSeconds) {
+        this.waveform = waveform;
+        this.sampleRate = sampleRate;
+        this.frequency = frequency;
+        this.amplitude = Math.max(0, Math.min(1, amplitude));
+        this.seed = seed;
+        this.realTime = realTime;
+        this.totalFrames = durationSeconds > 0 ? (long) (durationSeconds * sampleRate) : Long.MAX_VALUE;
+    }
+
+    @Override
+    public void open() throws IOException {
+        format = new AudioFormat(sampleRate, 16, 1, true, false);
+        random = new Random(seed);
+        phase = 0;
+        frame = 0;
+        startNanos = System.nanoTime();
+        open = true;
+    }
+
+    @Override
+    public AudioFormat getFormat() {
+        return format;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+        if (!open) {
+            throw new IOException("Source not open");
+        }
+        if (frame >= totalFrames) {
+            return -1;
+        }
+        int frames = (int) Math.min(length / 2, totalFrames - frame);
+        double phaseStep = 2 * Math.PI * frequency / sampleRate;
+        long clickPeriod = frequency > 0 ? Math.max(1, Math.round(sampleRate / frequency)) : Long.MAX_VALUE;
+        // A click is a short decaying burst, about 2 ms long
+        int clickLength = Math.max(1, (int) (sampleRate * 0.002));
+        for (int i = 0; i < frames; i++) {
+            double value;
+            switch (waveform) {
+                case SINE:
+                    value = Math.sin(phase);
+                    phase += phaseStep;
+                    if (phase > 2 * Math.PI) {
+                        phase -= 2 * Math.PI;
+                    }
+                    break;
+                case NOISE:
+                    value = random.nextDouble() * 2 - 1;
+                    break;
+                default:
+                    long offsetInPeriod = (frame + i) % clickPeriod;
+                    value = offsetInPeriod < clickLength ? 1.0 - offsetInPeriod / (double) clickLength : 0;
+                    break;
+            }
+            short sample = (short) Math.round(value * amplitude * Short.MAX_VALUE);
+            buffer[offset + 2 * i] = (byte) sample;
+            buffer[offset + 2 * i + 1] = (byte) (sample >> 8);
+        }
+        frame += frames;
+        if (realTime) {
+            long dueNanos = startNanos + (long) (frame * 1e9 / sampleRate);
+            long waitNanos = dueNanos - System.nanoTime();
+            while (waitNanos > 0) {
+                LockSupport.parkNanos(waitNanos);
+                waitNanos = dueNanos - System.nanoTime();
+            }
+        }
+        return frames * 2;
+    }
+
+    @Override
+    public String getName() {
+        return "Synthetic: " + waveform.name().toLowerCase() + " " + frequency + " Hz" + (realTime ? " (real time)" : " (fast)");
+    }
+
+    @Override
+    public void close() {
+        open = false;
+    }
+}
@@ -0,0 +1,482 @@
+/*
+ * DeeJ - An ImageJ plugin detects sound levels of mic or computer and triggers Fiji commands on the currently active window based on a defined threshold.
+ * 
+ * License: This software is provided under the GNU General Public License (GPL) version 3.
+ * Copyright (c) 2025 Hugo LE GUENNO
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package deej.engine;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.UnaryOperator;
+
+import ij.IJ;
+import ij.ImagePlus;
+
+import deej.action.ActionDispatcher;
+import deej.analysis.Band;
+import deej.analysis.FeatureRecorder;
+import deej.analysis.FeatureReplay;
+import deej.analysis.Features;
+import deej.analysis.OnsetDetector;
+import deej.analysis.SpectralAnalyzer;
+import deej.analysis.TempoEstimator;
+import deej.audio.AudioCapture;
+import deej.audio.AudioSource;
+import deej.audio.FeatureRingBuffer;
+import deej.audio.LineAudioSource;
+import deej.audio.SampleRingBuffer;
+import deej.metrics.LatencyMetrics;
+import deej.metrics.MetricsReporter;
+import deej.render.EffectSettings;
+import deej.render.FrameState;
+import deej.render.LutBank;
+import deej.render.RenderScheduler;
+import deej.render.TargetRegistry;
+
+/**
+ * Capture, analysis and effects of DeeJ without any UI. The analysis runs on its own thread and reads
+ * its settings from an immutable {@link EngineConfig} snapshot; a frame clock hands the latest state to
+ * the driven images and the action bindings. Works the same in the plugin window, in headless Fiji
+ * and from scripts; a UI follows the engine through the frame and stop listeners.
+ */
+public class DeeJEngine implements AutoCloseable {
+
+    // Frames per capture block, same 2048 bytes as before for 16-bit mono
+    private static final int BLOCK_FRAMES = 1024;
+    // Longest wait for the next block before the analysis checks whether the source ended
+    private static final long BLOCK_WAIT_MILLIS = 100;
+
+    // Capture thread -> analysis stage, preallocated once for the lifetime of the engine
+    private final SampleRingBuffer sampleRing = new SampleRingBuffer(1 << 16);
+    private final FeatureRingBuffer featureRing = new FeatureRingBuffer(256, Features.WIDTH);
+    private final float[] featureRecord = new float[Features.WIDTH];
+    private final AtomicReference<EngineConfig> config = new AtomicReference<EngineConfig>(new EngineConfig());
+    private volatile AudioSource audioSource = new LineAudioSource();
+    // Onsets and beats since the start of the capture, each target works out what it has not seen yet
+    private volatile long onsetTotal;
+    private volatile long beatTotal;
+    private volatile float beatPhase;
+    // Analysis stage -> frame clock, only the latest levels are kept and handed on once per frame
+    private final AtomicIntegerArray bandLevels = new AtomicIntegerArray(Band.values().length);
+    // Capture stamp of the block behind the latest state, for the audio-to-pixel latency
+    private volatile long latestCaptureNanos;
+    // Time of that block on the signal's clock, what the effects smooth over
+    private volatile long latestSignalNanos;
+    // Waits for a block that timed out while the source was still live, written by the analysis thread only
+    private volatile long stalls;
+    private final LatencyMetrics latency = new LatencyMetrics();
+    private final RenderScheduler renderScheduler;
+    // Images driven, each with its own pipeline; the LUT bank is decoded once and shared by all
+    private final TargetRegistry targets;
+    // Any ImageJ command or macro bound to a feature condition, run on the action target off the frame thread
+    private final ActionDispatcher actions = new ActionDispatcher();
+    private volatile ImagePlus actionTarget;
+    private volatile Consumer<FrameState> frameListener;
+    private volatile Runnable stopListener;
+    private volatile boolean running;
+    private Thread worker;
+
+    public DeeJEngine() {
+        renderScheduler = new RenderScheduler(config.get().getFrameRate(), this::renderFrame);
+        targets = new TargetRegistry(() -> config.get().getEffects(), LutBank.createDefault(), latency,
+                renderScheduler::markOwnUpdate);
+        // Actions on a driven image take its pipeline's image lock, so they never run between two effect writes
+        actions.setImageLocks(targets::getLock);
+    }
+
+    public EngineConfig getConfig() {
+        return config.get();
+    }
+
+    // Any thread: the analysis picks the snapshot up on its next block; FFT, hop, channel, recording and
+    // replay on the next start
+    public void setConfig(EngineConfig newConfig) {
+        config.set(newConfig);
+        renderScheduler.setFrameRate(newConfig.getFrameRate());
+    }
+
+    // Any thread: changes the current snapshot without losing a concurrent change to another setting
+    public EngineConfig updateConfig(UnaryOperator<EngineConfig> change) {
+        EngineConfig updated = config.updateAndGet(change);
+        renderScheduler.setFrameRate(updated.getFrameRate());
+        return updated;
+    }
+
+    public AudioSource getAudioSource() {
+        return audioSource;
+    }
+
+    // Used from the next start
+    public void setAudioSource(AudioSource audioSource) {
+        this.audioSource = audioSource;
+    }
+
+    // Any thread: changes the effect settings of the current snapshot; a change the renderers and
+    // scrubbers are built from has them rebuilt on the next state
+    public EffectSettings updateEffects(UnaryOperator<EffectSettings> change) {
+        EngineConfig before = config.get();
+        EngineConfig updated = updateConfig(current -> current.withEffects(change.apply(current.getEffects())));
+        if (updated.getEffects().needsRebuild(before.getEffects())) {
+            targets.reset();
+        }
+        return updated.getEffects();
+    }
+
+    public TargetRegistry getTargets() {
+        return targets;
+    }
+
+    public ActionDispatcher getActions() {
+        return actions;
+    }
+
+    public LatencyMetrics getLatency() {
+        return latency;
+    }
+
+    // Image the action bindings run on, null runs none
+    public void setActionTarget(ImagePlus imp) {
+        actionTarget = imp;
+    }
+
+    // Called on the frame thread, or the replay thread for a replay run as fast as possible, after
+    // each state is handed to the targets, keep it short
+    public void setFrameListener(Consumer<FrameState> frameListener) {
+        this.frameListener = frameListener;
+    }
+
+    // Called on the analysis thread once it has stopped, by stop() or at the end of the source
+    public void setStopListener(Runnable stopListener) {
+        this.stopListener = stopListener;
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    // Starts capturing and analysing, or replaying, on a new thread; false when already running
+    public synchronized boolean start() {
+        // A stopped analysis still finishing its block shares the rings, it must end first
+        if (running || (worker != null && worker.isAlive())) {
+            return false;
+        }
+        running = true;
+        actions.reset();
+        worker = new Thread(this::run, "DeeJ analysis");
+        worker.setDaemon(true);
+        worker.start();
+        return true;
+    }
+
+    // Asks the analysis to stop, it finishes its current block first
+    public void stop() {
+        running = false;
+    }
+
+    // Waits until the analysis thread has stopped, for scripts running a file to its end
+    public void join() throws InterruptedException {
+        Thread thread;
+        synchronized (this) {
+            thread = worker;
+        }
+        if (thread != null) {
+            thread.join();
+        }
+    }
+
+    private void run() {
+        EngineConfig started = config.get();
+        targets.restart();
+        try {
+            if (started.getReplayFile() != null) {
+                replay(started);
+            } else {
+                capture(started);
+            }
+        } finally {
+            running = false;
+            renderScheduler.stop();
+            for (int i = 0; i < bandLevels.length(); i++) {
+                bandLevels.set(i, 0);
+            }
+            logSummary();
+            Runnable listener = stopListener;
+            if (listener != null) {
+                listener.run();
+            }
+        }
+    }
+
+    private void capture(EngineConfig started) {
+        AudioSource source = audioSource;
+        sampleRing.clear();
+        featureRing.clear();
+        stalls = 0;
+        AudioCapture capture = new AudioCapture(source, sampleRing, featureRing, BLOCK_FRAMES);
+        latency.reset();
+        capture.setMetrics(latency);
+        capture.setChannel(started.getInputChannel());
+        MetricsReporter reporter = new MetricsReporter(latency, started.getMetricsFile(), started.getMetricsInterval());
+        reporter.start();
+        renderScheduler.start();
+        FeatureRecorder recorder = null;
+        try {
+            capture.start();
+            float sampleRate = source.getFormat().getSampleRate();
+            SpectralAnalyzer analyzer = new SpectralAnalyzer(started.getFftSize(), started.getHopSize(), sampleRate);
+            float[] spectrum = new float[Features.WIDTH];
+            OnsetDetector onsetDetector = new OnsetDetector(sampleRate);
+            TempoEstimator tempo = new TempoEstimator(sampleRate);
+            String recordPath = started.getRecordPath();
+            if (!recordPath.isEmpty()) {
+                try {
+                    recorder = new FeatureRecorder(new File(recordPath), Features.WIDTH, sampleRate,
+                            started.getFftSize(), started.getHopSize());
+                } catch (IOException e) {
+                    IJ.log("DeeJ: cannot record features to " + recordPath + ": " + e.getMessage());
+                }
+            }
+
+            while (running) {
+                // Park until the capture thread hands over a block, no polling sleep
+                if (!featureRing.await(BLOCK_WAIT_MILLIS * 1_000_000L)) {
+                    if (capture.isFinished()) {
+                        break; // End of file or synthetic signal
+                    }
+                    // The source went quiet for a whole timeout: the analysis starved
+                    stalls++;
+                    continue;
+                }
+                featureRing.read(featureRecord);
+                // Samples of this block are already in the ring, analyze every complete hop
+                // Flux is the largest change seen during the block so short hits are not lost
+                float blockFlux = -1;
+                int onsets = 0;
+                int beats = 0;
+                while (analyzer.next(sampleRing, spectrum)) {
+                    blockFlux = Math.max(blockFlux, spectrum[Features.FLUX]);
+                    float[] frame = analyzer.getHistory();
+                    for (int i = analyzer.getFftSize() - analyzer.getHopSize(); i < frame.length; i++) {
+                        if (onsetDetector.process(frame[i])) {
+                            onsets++;
+                            tempo.onOnset(onsetDetector.getSampleCount());
+                        }
+                    }
+                    beats += tempo.update(onsetDetector.getSampleCount(), onsetDetector.isActive());
+                }
+                if (blockFlux >= 0) {
+                    spectrum[Features.FLUX] = blockFlux;
+                }
+                // Bands keep their last value when the hop is longer than a block
+                featureRecord[Features.BASS] = spectrum[Features.BASS];
+                featureRecord[Features.MID] = spectrum[Features.MID];
+                featureRecord[Features.TREBLE] = spectrum[Features.TREBLE];
+                featureRecord[Features.FLUX] = spectrum[Features.FLUX];
+                featureRecord[Features.ONSET] = onsets;
+                featureRecord[Features.BEAT] = beats;
+                featureRecord[Features.BEAT_PHASE] = (float) tempo.getPhase(onsetDetector.getSampleCount());
+                featureRecord[Features.TEMPO] = (float) tempo.getBpm();
+
+                boolean active = onsetDetector.isActive();
+                long captured = featureRing.getLastReadTimestamp();
+                if (recorder != null) {
+                    try {
+                        recorder.append(captured, active, featureRecord);
+                    } catch (IOException e) {
+                        IJ.log("DeeJ: feature recording stopped: " + e.getMessage());
+                        recorder.close();
+                        recorder = null;
+                    }
+                }
+                publishFeatures(active, captured, captured);
+                renderScheduler.requestFrame();
+            }
+        } catch (IOException e) {
+            // Only opening the source throws here; the stop listener puts the window back to stopped
+            IJ.error("DeeJ", "Cannot open " + source.getName() + ":\n" + e.getMessage());
+        } catch (RuntimeException e) {
+            IJ.log("DeeJ analysis stopped: " + e);
+        } finally {
+            capture.stop();
+            reporter.stop();
+            if (recorder != null) {
+                recorder.close();
+                IJ.log("DeeJ: " + recorder.getRecordCount() + " feature blocks recorded to " + recorder.getFile());
+            }
+            if (capture.getFailure() != null) {
+                IJ.log("DeeJ capture stopped: " + capture.getFailure().getMessage());
+            }
+            long lostSamples = sampleRing.getOverrunSamples();
+            long lostBlocks = featureRing.getOverrunRecords();
+            if (lostSamples > 0 || lostBlocks > 0 || stalls > 0) {
+                IJ.log("DeeJ: " + getRingSummary());
+            }
+        }
+    }
+
+    // Plays a feature log back through the render stage, in place of capture and analysis. In real
+    // time the records go through the frame clock like live audio; as fast as possible each record
+    // is rendered on this thread and drawn by every target before the next, so no state is merged
+    // and the same log and seed give the same frames
+    private void replay(EngineConfig started) {
+        latency.reset();
+        MetricsReporter reporter = new MetricsReporter(latency, started.getMetricsFile(), started.getMetricsInterval());
+        reporter.start();
+        boolean realTime = started.isReplayRealTime();
+        if (realTime) {
+            renderScheduler.start();
+        }
+        long blocks = 0;
+        long start = System.nanoTime();
+        try (FeatureReplay replay = new FeatureReplay(started.getReplayFile())) {
+            while (running && replay.next(featureRecord)) {
+                if (realTime) {
+                    long wait = start + replay.getTimestamp() - System.nanoTime();
+                    if (wait > 0) {
+                        TimeUnit.NANOSECONDS.sleep(wait);
+                    }
+                }
+                // Stamped on release, the latency covers the render path only; the effects follow
+                // the logged time, so smoothing does not depend on how fast the records are read
+                publishFeatures(replay.isActive(), System.nanoTime(), replay.getTimestamp());
+                if (realTime) {
+                    renderScheduler.requestFrame();
+                } else {
+                    renderFrame(true);
+                }
+                blocks++;
+            }
+        } catch (IOException e) {
+            IJ.log("DeeJ replay stopped: " + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            reporter.stop();
+            IJ.log("DeeJ replay: " + blocks + " blocks in "
+                    + String.format("%.2f", (System.nanoTime() - start) / 1e9) + " s");
+        }
+    }
+
+    // Analysis stage -> render stage: scales featureRecord to the levels and totals of the next state
+    private void publishFeatures(boolean active, long captureNanos, long signalNanos) {
+        // Sensitivity only scales what is displayed, silence comes from the adaptive noise floor
+        EngineConfig current = config.get();
+        double scale = current.getEffects().getLevelHeight() * current.getSensitivity() / 100.0;
+        for (Band band : Band.values()) {
+            double value = featureRecord[band.getFeatureIndex()];
+            int level = active ? (int) (value * scale) : 0;
+            bandLevels.set(band.ordinal(), level);
+        }
+
+        // Totals are only written here, targets take the difference from their last state; a silent
+        // block fires nothing, as its levels are 0
+        if (active) {
+            onsetTotal += (int) featureRecord[Features.ONSET];
+            beatTotal += (int) featureRecord[Features.BEAT];
+        }
+        beatPhase = featureRecord[Features.BEAT_PHASE];
+        latestCaptureNanos = captureNanos;
+        latestSignalNanos = signalNanos;
+        latency.record(LatencyMetrics.Stage.FEATURES, captureNanos);
+    }
+
+    // Frame thread, at most once per frame: hands the latest state to every target, each applies and
+    // draws it on the effect pool so a slow image does not hold up the others
+    private boolean renderFrame() {
+        try {
+            return renderFrame(false);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    // wait: returns only once every target has drawn this very state
+    private boolean renderFrame(boolean wait) throws InterruptedException {
+        int[] levels = new int[bandLevels.length()];
+        for (int i = 0; i < levels.length; i++) {
+            levels[i] = bandLevels.get(i);
+        }
+        FrameState state = new FrameState(levels, onsetTotal, beatTotal, beatPhase, latestCaptureNanos,
+                latestSignalNanos);
+        if (wait) {
+            targets.apply(state);
+        } else {
+            targets.update(state);
+        }
+        // Bound commands run on the action target, each binding queues and rate limits its own runs
+        actions.dispatch(actionTarget, state);
+        Consumer<FrameState> listener = frameListener;
+        if (listener != null) {
+            listener.accept(state);
+        }
+        return targets.isAnimating();
+    }
+
+    // True when the image listener is seeing a redraw of imp made by the engine itself
+    public boolean isOwnUpdate(ImagePlus imp) {
+        return renderScheduler.isOwnUpdate(imp);
+    }
+
+    // Stops driving imp, for an image closed or no longer wanted
+    public void removeTarget(ImagePlus imp) {
+        targets.remove(imp);
+        renderScheduler.forget(imp);
+    }
+
+    public String getRenderSummary() {
+        return renderScheduler.getSummary();
+    }
+
+    public String getRingSummary() {
+        return sampleRing.getOverrunSamples() + " samples overrun, " + featureRing.getOverrunRecords()
+                + " feature blocks dropped, " + stalls + " waits of " + BLOCK_WAIT_MILLIS
+                + " ms without audio";
+    }
+
+    // Render, ring, target and action figures, for the diagnostics window
+    public String getSummary() {
+        return "Render: " + getRenderSummary()
+                + "\nRings: " + getRingSummary()
+                + "\nTargets:\n" + targets.getSummary()
+                + "\nActions:\n" + actions.getSummary();
+    }
+
+    private void logSummary() {
+        IJ.log("DeeJ render: " + renderScheduler.getSummary());
+        if (targets.size() > 0) {
+            IJ.log("DeeJ targets:\n" + targets.getSummary());
+        }
+        if (!actions.getBindings().isEmpty()) {
+            IJ.log("DeeJ actions:\n" + actions.getSummary());
+        }
+    }
+
+    // Stops the analysis and releases every thread of the engine
+    @Override
+    public void close() {
+        stop();
+        renderScheduler.close();
+        targets.close();
+        actions.close();
+    }
+}
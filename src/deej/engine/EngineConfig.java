@@ -0,0 +1,179 @@
+/*
+ * DeeJ - An ImageJ plugin detects sound levels of mic or computer and triggers Fiji commands on the currently active window based on a defined threshold.
+ * 
+ * License: This software is provided under the GNU General Public License (GPL) version 3.
+ * Copyright (c) 2025 Hugo LE GUENNO
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package deej.engine;
+
+import java.io.File;
+
+import deej.render.EffectSettings;
+
+/**
+ * Settings of one DeeJ engine as an immutable snapshot, the effect settings included. Callers derive
+ * a changed copy with the with methods and hand it to the engine; the analysis thread reads one
+ * snapshot per block and each effect pipeline one per state, so neither sees half of an update and
+ * neither touches UI components.
+ */
+public final class EngineConfig {
+
+    private int fftSize = 1024;
+    private int hopSize = 256;
+    // Input channel analysed, -1 averages all channels
+    private int inputChannel = -1;
+    // Percent scaling from feature values to levels, the plugin's slider
+    private int sensitivity = 50;
+    private int frameRate = 60;
+    // Feature log written during capture, empty for none
+    private String recordPath = "";
+    // Feature log played back instead of capturing and analysing audio, null for live capture
+    private File replayFile;
+    private boolean replayRealTime = true;
+    private int metricsInterval;
+    private String metricsFile = "";
+    // What the effects do with the levels, also holds the level height the analysis scales by
+    private EffectSettings effects = new EffectSettings();
+
+    public EngineConfig() {
+    }
+
+    private EngineConfig copy() {
+        EngineConfig config = new EngineConfig();
+        config.fftSize = fftSize;
+        config.hopSize = hopSize;
+        config.inputChannel = inputChannel;
+        config.sensitivity = sensitivity;
+        config.frameRate = frameRate;
+        config.recordPath = recordPath;
+        config.replayFile = replayFile;
+        config.replayRealTime = replayRealTime;
+        config.metricsInterval = metricsInterval;
+        config.metricsFile = metricsFile;
+        config.effects = effects;
+        return config;
+    }
+
+    public int getFftSize() {
+        return fftSize;
+    }
+
+    public int getHopSize() {
+        return hopSize;
+    }
+
+    // Both at once since each is only valid against the other
+    public EngineConfig withAnalysis(int fftSize, int hopSize) {
+        if (fftSize < 64 || Integer.bitCount(fftSize) != 1 || hopSize < 1 || hopSize > fftSize) {
+            throw new IllegalArgumentException(
+                    "FFT size must be a power of 2 (at least 64) and the hop size between 1 and the FFT size");
+        }
+        EngineConfig config = copy();
+        config.fftSize = fftSize;
+        config.hopSize = hopSize;
+        return config;
+    }
+
+    public int getInputChannel() {
+        return inputChannel;
+    }
+
+    public EngineConfig withInputChannel(int inputChannel) {
+        EngineConfig config = copy();
+        config.inputChannel = Math.max(-1, inputChannel);
+        return config;
+    }
+
+    public int getSensitivity() {
+        return sensitivity;
+    }
+
+    public EngineConfig withSensitivity(int sensitivity) {
+        EngineConfig config = copy();
+        config.sensitivity = Math.max(0, sensitivity);
+        return config;
+    }
+
+    public int getFrameRate() {
+        return frameRate;
+    }
+
+    public EngineConfig withFrameRate(int frameRate) {
+        EngineConfig config = copy();
+        config.frameRate = Math.max(1, frameRate);
+        return config;
+    }
+
+    public String getRecordPath() {
+        return recordPath;
+    }
+
+    public EngineConfig withRecordPath(String recordPath) {
+        EngineConfig config = copy();
+        config.recordPath = recordPath == null ? "" : recordPath.trim();
+        return config;
+    }
+
+    public File getReplayFile() {
+        return replayFile;
+    }
+
+    public boolean isReplayRealTime() {
+        return replayRealTime;
+    }
+
+    // A null file captures and analyses the audio source again
+    public EngineConfig withReplay(File replayFile, boolean replayRealTime) {
+        EngineConfig config = copy();
+        config.replayFile = replayFile;
+        config.replayRealTime = replayRealTime;
+        return config;
+    }
+
+    public int getMetricsInterval() {
+        return metricsInterval;
+    }
+
+    public String getMetricsFile() {
+        return metricsFile;
+    }
+
+    public EngineConfig withMetrics(int metricsInterval, String metricsFile) {
+        EngineConfig config = copy();
+        config.metricsInterval = Math.max(0, metricsInterval);
+        config.metricsFile = metricsFile == null ? "" : metricsFile.trim();
+        return config;
+    }
+
+    public EffectSettings getEffects() {
+        return effects;
+    }
+
+    public EngineConfig withEffects(EffectSettings effects) {
+        EngineConfig config = copy();
+        config.effects = effects;
+        return config;
+    }
+
+    @Override
+    public String toString() {
+        return "FFT " + fftSize + "/" + hopSize + ", channel " + (inputChannel < 0 ? "mix" : inputChannel + 1)
+                + ", sensitivity " + sensitivity + ", " + frameRate + " Hz"
+                + (replayFile != null ? ", replay " + replayFile.getName() : "")
+                + (recordPath.isEmpty() ? "" : ", record " + recordPath);
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ * DeeJ - An ImageJ plugin detects sound levels of mic or computer and triggers Fiji commands on the currently active window based on a defined threshold.
+ * 
+ * License: This software is provided under the GNU General Public License (GPL) version 3.
+ * Copyright (c) 2025 Hugo LE GUENNO
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package deej.metrics;
+
+import java.awt.Font;
+import java.util.function.Supplier;
+
+import javax.swing.JFrame;
+import javax.swing.JScrollPane;
+import javax.swing.JTextArea;
+import javax.swing.Timer;
+
+/**
+ * Small window refreshing the latency table twice a second, plus any extra lines the caller supplies
+ * (ring overruns, render scheduler counters).
+ */
+public class DiagnosticsWindow extends JFrame {
+
+    private static final long serialVersionUID = 1L;
+
+    private final LatencyMetrics metrics;
+    private final Supplier<String> extra;
+    private final JTextArea text = new JTextArea(14, 48);
+    private final Timer timer;
+
+    public DiagnosticsWindow(LatencyMetrics metrics, Supplier<String> extra) {
+        super("DeeJ diagnostics");
+        this.metrics = metrics;
+        this.extra = extra;
+        text.setEditable(false);
+        text.setFont(new Font(Font.MONOSPACED, Font.PLAIN, 12));
+        add(new JScrollPane(text));
+        pack();
+        timer = new Timer(500, e -> refresh());
+        setDefaultCloseOperation(JFrame.DISPOSE_ON_CLOSE);
+    }
+
+    private void refresh() {
+        text.setText(metrics.toTable() + (extra != null ? "\n" + extra.get() : ""));
+    }
+
+    @Override
+    public void setVisible(boolean visible) {
+        super.setVisible(visible);
+        if (visible) {
+            refresh();
+            timer.start();
+        } else {
+            timer.stop();
+        }
+    }
+
+    @Override
+    public void dispose() {
+        timer.stop();
+        super.dispose();
+    }
+}
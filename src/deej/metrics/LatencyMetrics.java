@@ -0,0 +1,109 @@
+/*
+ * DeeJ - An ImageJ plugin detects sound levels of mic or computer and triggers Fiji commands on the currently active window based on a defined threshold.
+ * 
+ * License: This software is provided under the GNU General Public License (GPL) version 3.
+ * Copyright (c) 2025 Hugo LE GUENNO
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package deej.metrics;
+
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Audio-to-pixel latency per pipeline stage. Every value is the age of a captured block, measured
+ * from the moment its bytes left the audio source, when it reaches the stage: capture (decoded),
+ * analysis (features), and the effect pool, one thread per target at once (scheduled, applied, drawn).
+ */
+public class LatencyMetrics {
+
+    public enum Stage {
+        DECODED("decode"),
+        FEATURES("features"),
+        SCHEDULED("schedule"),
+        APPLIED("apply"),
+        DRAWN("draw");
+
+        private final String label;
+
+        Stage(String label) {
+            this.label = label;
+        }
+
+        public String getLabel() {
+            return label;
+        }
+    }
+
+    private final Map<Stage, LatencyHistogram> histograms = new EnumMap<Stage, LatencyHistogram>(Stage.class);
+    private volatile boolean enabled = true;
+
+    public LatencyMetrics() {
+        for (Stage stage : Stage.values()) {
+            histograms.put(stage, new LatencyHistogram());
+        }
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    // captureNanos is the System.nanoTime() stamp the block got when it was read
+    public void record(Stage stage, long captureNanos) {
+        if (enabled) {
+            histograms.get(stage).record(System.nanoTime() - captureNanos);
+        }
+    }
+
+    public LatencyHistogram get(Stage stage) {
+        return histograms.get(stage);
+    }
+
+    public void reset() {
+        for (LatencyHistogram histogram : histograms.values()) {
+            histogram.reset();
+        }
+    }
+
+    public static String csvHeader() {
+        return "time_ms,stage,count,mean_us,p50_us,p99_us,max_us";
+    }
+
+    // One CSV line per stage, all stamped with the same wall clock time
+    public String toCsv(long timeMillis) {
+        StringBuilder sb = new StringBuilder();
+        for (Stage stage : Stage.values()) {
+            LatencyHistogram h = histograms.get(stage);
+            sb.append(String.format(Locale.US, "%d,%s,%d,%.1f,%.1f,%.1f,%.1f%n", timeMillis, stage.getLabel(),
+                    h.getCount(), h.getMean() / 1e3, h.getPercentile(0.5) / 1e3, h.getPercentile(0.99) / 1e3,
+                    h.getMax() / 1e3));
+        }
+        return sb.toString();
+    }
+
+    // Human readable table in milliseconds
+    public String toTable() {
+        StringBuilder sb = new StringBuilder(String.format(Locale.US, "%-9s %8s %8s %8s %8s%n",
+                "stage", "count", "p50 ms", "p99 ms", "max ms"));
+        for (Stage stage : Stage.values()) {
+            LatencyHistogram h = histograms.get(stage);
+            sb.append(String.format(Locale.US, "%-9s %8d %8.2f %8.2f %8.2f%n", stage.getLabel(), h.getCount(),
+                    h.getPercentile(0.5) / 1e6, h.getPercentile(0.99) / 1e6, h.getMax() / 1e6));
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ * DeeJ - An ImageJ plugin detects sound levels of mic or computer and triggers Fiji commands on the currently active window based on a defined threshold.
+ * 
+ * License: This software is provided under the GNU General Public License (GPL) version 3.
+ * Copyright (c) 2025 Hugo LE GUENNO
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package deej.metrics;
+
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import ij.IJ;
+
+/**
+ * Periodically dumps LatencyMetrics to a CSV file, or to the ImageJ log when no file is given.
+ * Runs on its own daemon thread so formatting never touches the audio or render path.
+ */
+public class MetricsReporter {
+
+    private final LatencyMetrics metrics;
+    private final String csvPath;
+    private final int intervalSeconds;
+    private ScheduledExecutorService executor;
+    private Writer writer;
+
+    public MetricsReporter(LatencyMetrics metrics, String csvPath, int intervalSeconds) {
+        this.metrics = metrics;
+        this.csvPath = csvPath == null || csvPath.isEmpty() ? null : csvPath;
+        this.intervalSeconds = intervalSeconds;
+    }
+
+    public void start() {
+        if (intervalSeconds <= 0) {
+            return;
+        }
+        if (csvPath != null) {
+            try {
+                boolean exists = new java.io.File(csvPath).length() > 0;
+                writer = new FileWriter(csvPath, true);
+                if (!exists) {
+                    writer.write(LatencyMetrics.csvHeader() + System.lineSeparator());
+                }
+            } catch (IOException e) {
+                IJ.log("DeeJ: cannot write metrics to " + csvPath + ": " + e.getMessage());
+                writer = null;
+            }
+        }
+        executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "DeeJ metrics");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.scheduleAtFixedRate(this::report, intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+    }
+
+    private void report() {
+        if (writer != null) {
+            try {
+                writer.write(metrics.toCsv(System.currentTimeMillis()));
+                writer.flush();
+            } catch (IOException e) {
+                IJ.log("DeeJ: metrics dump failed: " + e.getMessage());
+            }
+        } else {
+            IJ.log("DeeJ latency\n" + metrics.toTable());
+        }
+    }
+
+    // Writes a last report and releases the file
+    public void stop() {
+        if (executor == null) {
+            return;
+        }
+        executor.shutdownNow();
+        executor = null;
+        report();
+        if (writer != null) {
+            try {
+                writer.close();
+            } catch (IOException e) {
+                // Already reported by the last write if the disk is at fault
+            }
+            writer = null;
+        }
+    }
+}
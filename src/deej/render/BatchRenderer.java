@@ -0,0 +1,402 @@
+/*
+ * DeeJ - An ImageJ plugin detects sound levels of mic or computer and triggers Fiji commands on the currently active window based on a defined threshold.
+ * 
+ * License: This software is provided under the GNU General Public License (GPL) version 3.
+ * Copyright (c) 2025 Hugo LE GUENNO
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package deej.render;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import ij.IJ;
+import ij.ImagePlus;
+import ij.ImageStack;
+import ij.VirtualStack;
+import ij.plugin.filter.AVI_Writer;
+import ij.process.ColorProcessor;
+import ij.process.ImageProcessor;
+
+import deej.analysis.Band;
+import deej.analysis.FeatureTimeline;
+import deej.analysis.Features;
+import deej.analysis.Trigger;
+
+/**
+ * Offline counterpart of the plugin's render loop: turns a feature timeline and a source image
+ * into one RGB frame per timeline frame. The effect state of every frame (cumulative rotation,
+ * contrast, LUT or LUT crossfade) is planned first in one sequential pass, with the same rules as
+ * the live plugin, so each frame can then be drawn on its own from the source pixels. Frames are
+ * spread over a fork-join pool; the source image is never modified. Configure before rendering.
+ */
+public class BatchRenderer {
+
+    // Frames a virtual stack renders ahead per thread when a frame is missing
+    private static final int CHUNK_PER_THREAD = 4;
+
+    private final ImageProcessor source;
+    private final FeatureTimeline timeline;
+    private final LutBank lutBank;
+    private final ForkJoinPool pool;
+    private final int threads;
+    private final int[] sourceColors;
+
+    // A null trigger leaves the action off
+    private Band rotateBand = Band.LEVEL;
+    private Trigger rotateTrigger;
+    private Band contrastBand = Band.LEVEL;
+    private Trigger contrastTrigger;
+    private Band lutBand = Band.LEVEL;
+    private Trigger lutTrigger;
+    private int lutFadeFrames;
+    // Band value to level, the slider value of the plugin
+    private double sensitivity = 50;
+    // Level of a band value of 1 at 100 % sensitivity, the height of the plugin's level bar
+    private int levelHeight = 100;
+    // Level the LUT changes at in Level mode, in level bar units as in the plugin
+    private double lutThreshold = 700;
+    private ParameterMapping rotationMapping = ParameterMapping.ROTATION;
+    private ParameterMapping contrastMapping = ParameterMapping.CONTRAST;
+    private long seed = 1;
+    // Gamma of the intensity mapping, 1 shows the image as ImageJ does
+    private double gamma = 1;
+    private final ThreadLocal<IntensityKernel> kernels;
+
+    // Planned state, one entry per frame, planned again after any setter
+    private boolean planned;
+    private double[] angles;
+    private double[] contrasts;
+    private int[] lutFrom;
+    private int[] lutTo;
+    private float[] lutMix;
+
+    public BatchRenderer(ImageProcessor source, FeatureTimeline timeline, LutBank lutBank, int threads) {
+        if (source.getWidth() < 2 || source.getHeight() < 2) {
+            throw new IllegalArgumentException("Image too small to render");
+        }
+        this.source = source.duplicate();
+        this.source.setMinAndMax(source.getMin(), source.getMax());
+        this.timeline = timeline;
+        this.lutBank = lutBank;
+        this.threads = Math.max(1, threads);
+        pool = new ForkJoinPool(this.threads);
+        kernels = ThreadLocal.withInitial(() -> new IntensityKernel(pool));
+        sourceColors = new int[256];
+        if (!(source instanceof ColorProcessor)) {
+            source.getLut().getRGBs(sourceColors);
+        }
+    }
+
+    public void setRotation(Band band, Trigger trigger) {
+        rotateBand = band;
+        rotateTrigger = trigger;
+        planned = false;
+    }
+
+    public void setContrast(Band band, Trigger trigger) {
+        contrastBand = band;
+        contrastTrigger = trigger;
+        planned = false;
+    }
+
+    public void setLut(Band band, Trigger trigger, int fadeFrames) {
+        lutBand = band;
+        lutTrigger = trigger;
+        lutFadeFrames = Math.max(0, fadeFrames);
+        planned = false;
+    }
+
+    public void setSensitivity(double sensitivity) {
+        this.sensitivity = sensitivity;
+        planned = false;
+    }
+
+    public void setLevelHeight(int levelHeight) {
+        this.levelHeight = Math.max(1, levelHeight);
+        planned = false;
+    }
+
+    public void setLutThreshold(double lutThreshold) {
+        this.lutThreshold = lutThreshold;
+        planned = false;
+    }
+
+    // Curves, smoothing and thresholds of the rotation step and contrast factor, as in the live plugin
+    public void setRotationMapping(ParameterMapping mapping) {
+        rotationMapping = mapping;
+        planned = false;
+    }
+
+    public void setContrastMapping(ParameterMapping mapping) {
+        contrastMapping = mapping;
+        planned = false;
+    }
+
+    // Frames are not planned again, the gamma only changes how they are drawn
+    public void setGamma(double gamma) {
+        this.gamma = gamma > 0 ? gamma : 1;
+    }
+
+    // Seed of the random LUT choice, the same seed renders the same video
+    public void setSeed(long seed) {
+        this.seed = seed;
+        planned = false;
+    }
+
+    public int getFrameCount() {
+        return timeline.getFrameCount();
+    }
+
+    public int getWidth() {
+        return source.getWidth();
+    }
+
+    public int getHeight() {
+        return source.getHeight();
+    }
+
+    // Walks the timeline once and records the effect state of every frame, called by the render methods
+    public synchronized void plan() {
+        if (planned) {
+            return;
+        }
+        int frames = timeline.getFrameCount();
+        angles = new double[frames];
+        contrasts = new double[frames];
+        lutFrom = new int[frames];
+        lutTo = new int[frames];
+        lutMix = new float[frames];
+        Random random = new Random(seed);
+        double angle = 0;
+        double contrast = 1;
+        int current = -1;
+        int fadeFrom = -1;
+        int fadeFrame = 0;
+        boolean lutChanged = false;
+        ParameterMapping.Follower rotation = rotationMapping.newFollower();
+        ParameterMapping.Follower contrastFollower = contrastMapping.newFollower();
+        double pendingAngle = 0;
+        for (int f = 0; f < frames; f++) {
+            // Frame times from the frame rate, the smoothing does not depend on how fast frames render
+            long nanos = Math.round(f * 1e9 / timeline.getFrameRate());
+            int onsets = (int) timeline.get(f, Features.ONSET);
+            int beats = (int) timeline.get(f, Features.BEAT);
+            // In Level mode the LUT changes once each time its band crosses the threshold
+            boolean lutCrossing = false;
+            if (lutTrigger != null && level(f, lutBand) > lutThreshold) {
+                lutCrossing = !lutChanged;
+                lutChanged = true;
+            } else {
+                lutChanged = false;
+            }
+            if (lutTrigger != null && (lutTrigger == Trigger.LEVEL ? lutCrossing : lutTrigger.fires(onsets, beats))) {
+                int index = lutBank.randomIndex(random, current);
+                if (lutFadeFrames > 0 && current >= 0 && index != current) {
+                    fadeFrom = current;
+                    fadeFrame = 0;
+                } else {
+                    fadeFrom = -1;
+                }
+                current = index;
+            }
+            if (fadeFrom >= 0 && ++fadeFrame >= lutFadeFrames) {
+                fadeFrom = -1;
+            }
+            lutFrom[f] = fadeFrom >= 0 ? fadeFrom : current;
+            lutTo[f] = current;
+            lutMix[f] = fadeFrom >= 0 ? (float) fadeFrame / lutFadeFrames : 1;
+
+            // Same rule as the live pipeline: parameters follow the band on every frame, Level mode applies
+            // them on every frame, onset and beat modes when they fired, once they moved enough
+            if (rotateTrigger != null) {
+                double step = rotation.update(percentage(f, rotateBand), nanos);
+                if (rotateTrigger == Trigger.LEVEL || rotateTrigger.fires(onsets, beats)) {
+                    pendingAngle += step;
+                    if (pendingAngle != 0 && Math.abs(pendingAngle) >= rotation.getThreshold()) {
+                        angle = (angle + pendingAngle) % 360;
+                        pendingAngle = 0;
+                    }
+                }
+            }
+            if (contrastTrigger != null) {
+                contrastFollower.update(percentage(f, contrastBand), nanos);
+                if ((contrastTrigger == Trigger.LEVEL || contrastTrigger.fires(onsets, beats))
+                        && contrastFollower.hasChanged()) {
+                    contrast = contrastFollower.take();
+                }
+            }
+            angles[f] = angle;
+            contrasts[f] = contrast;
+        }
+        planned = true;
+    }
+
+    // The band level as the plugin publishes it, in level bar units
+    private int level(int frame, Band band) {
+        return timeline.isActive(frame)
+                ? (int) (timeline.get(frame, band.getFeatureIndex()) * levelHeight * sensitivity / 100.0) : 0;
+    }
+
+    // The band level on the scale of the parameter curves
+    private double percentage(int frame, Band band) {
+        return level(frame, band) * 100.0 / levelHeight;
+    }
+
+    // Draws one frame, 0 based, from the source; safe to call from several threads at once
+    public ColorProcessor renderFrame(int frame) {
+        plan();
+        ImageProcessor ip = source.duplicate();
+        if (angles[frame] != 0) {
+            RotationRenderer rotation = new RotationRenderer(ip, null);
+            rotation.setAngle(angles[frame]);
+            rotation.render();
+        }
+        double min = source.getMin();
+        double max = min + (source.getMax() - min) * contrasts[frame];
+        // Each worker keeps its tables, consecutive frames with the same range and LUT reuse them
+        IntensityKernel kernel = kernels.get();
+        kernel.setWindow(min, max);
+        kernel.setGamma(gamma);
+        if (lutTo[frame] >= 0) {
+            kernel.setColors(lutMix[frame] < 1 ? lutBank.getBlend(lutFrom[frame], lutTo[frame], lutMix[frame])
+                    : lutBank.getLut(lutTo[frame]));
+        } else {
+            kernel.setColors(sourceColors);
+        }
+        return new ColorProcessor(getWidth(), getHeight(), kernel.apply(ip, null));
+    }
+
+    // Renders every frame into memory, four bytes per pixel per frame
+    public ImageStack renderStack() {
+        int frames = getFrameCount();
+        int[][] pixels = new int[frames][];
+        render(0, frames, pixels, 0, true);
+        ImageStack stack = new ImageStack(getWidth(), getHeight());
+        for (int f = 0; f < frames; f++) {
+            stack.addSlice(frameLabel(f), pixels[f]);
+        }
+        return stack;
+    }
+
+    // Stack that draws frames when they are shown or saved, a chunk at a time across the pool
+    public ImageStack createVirtualStack() {
+        return new RenderedStack(this);
+    }
+
+    // Writes the frames to an AVI file at the timeline frame rate, one chunk in memory at a time
+    public void writeAvi(String path, int compression, int jpegQuality) throws IOException {
+        ImagePlus imp = new ImagePlus("DeeJ", createVirtualStack());
+        imp.getCalibration().fps = timeline.getFrameRate();
+        new AVI_Writer().writeImage(imp, path, compression, jpegQuality);
+    }
+
+    public void close() {
+        pool.shutdown();
+    }
+
+    private String frameLabel(int frame) {
+        return IJ.d2s(frame / timeline.getFrameRate(), 3) + " s";
+    }
+
+    // Renders frames [from, to) into out[frame - offset]
+    private void render(int from, int to, int[][] out, int offset, boolean progress) {
+        plan();
+        AtomicInteger done = new AtomicInteger();
+        pool.invoke(new FrameTask(from, to, out, offset, progress ? done : null));
+        if (progress) {
+            IJ.showProgress(1.0);
+        }
+    }
+
+    private class FrameTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+        private final int from;
+        private final int to;
+        private final int[][] out;
+        private final int offset;
+        private final AtomicInteger done;
+
+        FrameTask(int from, int to, int[][] out, int offset, AtomicInteger done) {
+            this.from = from;
+            this.to = to;
+            this.out = out;
+            this.offset = offset;
+            this.done = done;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from == 1) {
+                out[from - offset] = (int[]) renderFrame(from).getPixels();
+                if (done != null) {
+                    int count = done.incrementAndGet();
+                    if (count % 16 == 0) {
+                        IJ.showProgress(count, getFrameCount());
+                    }
+                }
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new FrameTask(from, mid, out, offset, done), new FrameTask(mid, to, out, offset, done));
+        }
+    }
+
+    // Keeps the last rendered chunk, sequential reads (playback, AVI export) render ahead in parallel
+    private static class RenderedStack extends VirtualStack {
+
+        private final BatchRenderer renderer;
+        private final int[][] chunk;
+        private int chunkStart = -1;
+
+        RenderedStack(BatchRenderer renderer) {
+            super(renderer.getWidth(), renderer.getHeight(), null, null);
+            this.renderer = renderer;
+            chunk = new int[renderer.threads * CHUNK_PER_THREAD][];
+            setBitDepth(24);
+        }
+
+        // n is 1 based
+        @Override
+        public synchronized ImageProcessor getProcessor(int n) {
+            int frame = n - 1;
+            if (chunkStart < 0 || frame < chunkStart || frame >= chunkStart + chunk.length) {
+                int end = Math.min(renderer.getFrameCount(), frame + chunk.length);
+                renderer.render(frame, end, chunk, frame, false);
+                chunkStart = frame;
+            }
+            return new ColorProcessor(getWidth(), getHeight(), chunk[frame - chunkStart]);
+        }
+
+        @Override
+        public int getSize() {
+            return renderer.getFrameCount();
+        }
+
+        @Override
+        public String getSliceLabel(int n) {
+            return renderer.frameLabel(n - 1);
+        }
+
+        @Override
+        public void setPixels(Object pixels, int n) {
+        }
+    }
+}
@@ -0,0 +1,51 @@
+/*
+ * DeeJ - An ImageJ plugin detects sound levels of mic or computer and triggers Fiji commands on the currently active window based on a defined threshold.
+ * 
+ * License: This software is provided under the GNU General Public License (GPL) version 3.
+ * Copyright (c) 2025 Hugo LE GUENNO
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package deej.render;
+
+import deej.analysis.Trigger;
+
+/**
+ * The actions DeeJ can run on an image, each bound to one band and one trigger per target.
+ */
+public enum Effect {
+
+    ROTATE("Rotate", Trigger.ONSET),
+    CONTRAST("Contrast", Trigger.ONSET),
+    LUT("LUT", Trigger.ONSET),
+    // Level maps the band to a position, Beat sweeps the axis once per beat, Onset steps one position
+    SCRUB("Scrub", Trigger.LEVEL);
+
+    private final String label;
+    private final Trigger defaultTrigger;
+
+    Effect(String label, Trigger defaultTrigger) {
+        this.label = label;
+        this.defaultTrigger = defaultTrigger;
+    }
+
+    public String getLabel() {
+        return label;
+    }
+
+    public Trigger getDefaultTrigger() {
+        return defaultTrigger;
+    }
+}
@@ -0,0 +1,520 @@
+/*
+ * DeeJ - An ImageJ plugin detects sound levels of mic or computer and triggers Fiji commands on the currently active window based on a defined threshold.
+ * 
+ * License: This software is provided under the GNU General Public License (GPL) version 3.
+ * Copyright (c) 2025 Hugo LE GUENNO
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package deej.render;
+
+import java.util.Queue;
+import java.util.Random;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+import ij.IJ;
+import ij.ImagePlus;
+
+import deej.analysis.Band;
+import deej.analysis.Trigger;
+import deej.metrics.LatencyMetrics;
+
+/**
+ * The effects of one target image: which actions are on, the band and trigger of each, and the
+ * renderers and LUT fade state they need. States are applied on a worker thread, one at a time per
+ * image; a state arriving while the previous one is still being applied replaces any state waiting,
+ * so a slow image only skips its own frames. Action settings can be changed from any thread; changes
+ * that touch the pixels are posted to the worker, so only the worker and image actions ever take the
+ * image lock and the event thread never waits for a state being drawn.
+ */
+public class EffectPipeline {
+
+    private static class Action {
+        volatile boolean enabled;
+        volatile Band band = Band.LEVEL;
+        volatile Trigger trigger;
+    }
+
+    private final ImagePlus imp;
+    private final Supplier<EffectSettings> settingsSource;
+    private final LatencyMetrics latency;
+    // Called right before the pipeline redraws, so the plugin can tell its own updates from the user's
+    private final Consumer<ImagePlus> beforeDraw;
+    private final Action[] actions = new Action[Effect.values().length];
+    private final LutBank lutBank;
+    private final Random random;
+    private final Executor pool;
+
+    // Held while the pixels, display range or LUT of the image change: by the worker and by image actions
+    private final Object imageLock = new Object();
+    // Changes from other threads, run by the worker before the next state
+    private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<Runnable>();
+    private final AtomicReference<FrameState> latest = new AtomicReference<FrameState>();
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+    private volatile boolean closed;
+    private volatile boolean fading;
+    private final AtomicLong applied = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+    private volatile long maxApplyNanos;
+
+    // Worker state, guarded by imageLock; settings is the snapshot of the state being applied
+    private EffectSettings settings;
+    private long onsetsSeen = -1;
+    private long beatsSeen;
+    private boolean lutChanged;
+    private StackRotationRenderer rotationRenderer;
+    private StackContrast stackContrast;
+    private StackScrubber scrubber;
+    // Screen-resolution stand-in for a very large image, null while effects go to the image itself
+    private ProxyView proxy;
+    private double contrastFactor = 1;
+    // Smoothed rotation step and contrast factor, and degrees owed but too few to redraw for yet
+    private final ParameterMapping.Follower rotationFollower;
+    private final ParameterMapping.Follower contrastFollower;
+    private double pendingAngle;
+    private volatile long draws;
+
+    public EffectPipeline(ImagePlus imp, Supplier<EffectSettings> settings, LutBank lutBank, LatencyMetrics latency,
+            Consumer<ImagePlus> beforeDraw, Executor pool) {
+        this.imp = imp;
+        this.pool = pool;
+        settingsSource = settings;
+        this.settings = settings.get();
+        this.lutBank = new LutBank(lutBank);
+        this.latency = latency;
+        this.beforeDraw = beforeDraw;
+        random = new Random(this.settings.getSeed());
+        rotationFollower = this.settings.getRotationMapping().newFollower();
+        contrastFollower = this.settings.getContrastMapping().newFollower();
+        for (Effect effect : Effect.values()) {
+            actions[effect.ordinal()] = new Action();
+            actions[effect.ordinal()].trigger = effect.getDefaultTrigger();
+        }
+    }
+
+    public ImagePlus getImage() {
+        return imp;
+    }
+
+    public Object getImageLock() {
+        return imageLock;
+    }
+
+    public boolean isEnabled(Effect effect) {
+        return actions[effect.ordinal()].enabled;
+    }
+
+    public void setEnabled(Effect effect, boolean enabled) {
+        actions[effect.ordinal()].enabled = enabled;
+        if (!enabled && effect == Effect.SCRUB) {
+            post(this::closeScrubber);
+        }
+        if (!enabled && effect == Effect.ROTATE) {
+            // Switching Rotate off shows the image as it was before
+            post(() -> {
+                pendingAngle = 0;
+                if (!closed && releaseRotation()) {
+                    redraw();
+                }
+            });
+        }
+    }
+
+    // True while at least one action is on
+    public boolean isActive() {
+        for (Action action : actions) {
+            if (action.enabled) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public Band getBand(Effect effect) {
+        return actions[effect.ordinal()].band;
+    }
+
+    public void setBand(Effect effect, Band band) {
+        actions[effect.ordinal()].band = band;
+    }
+
+    public Trigger getTrigger(Effect effect) {
+        return actions[effect.ordinal()].trigger;
+    }
+
+    public void setTrigger(Effect effect, Trigger trigger) {
+        actions[effect.ordinal()].trigger = trigger;
+    }
+
+    // True while a LUT crossfade needs frames even without new audio state
+    public boolean isFading() {
+        return fading;
+    }
+
+    // Any thread: hands over the newest state, run on the pool unless a run for this image is already queued
+    public void submit(FrameState state) {
+        if (closed) {
+            return;
+        }
+        if (latest.getAndSet(state) != null) {
+            coalesced.incrementAndGet();
+        }
+        schedule();
+    }
+
+    // Any thread: runs the change on the worker, before the next state
+    private void post(Runnable task) {
+        tasks.add(task);
+        schedule();
+    }
+
+    private void schedule() {
+        if (scheduled.compareAndSet(false, true)) {
+            pool.execute(this::drain);
+        }
+    }
+
+    private void drain() {
+        try {
+            while (true) {
+                synchronized (imageLock) {
+                    runTasks();
+                    FrameState state = closed ? null : latest.getAndSet(null);
+                    if (state == null) {
+                        break;
+                    }
+                    apply(state);
+                }
+            }
+        } catch (RuntimeException e) {
+            IJ.log("DeeJ: effects on " + imp.getTitle() + " failed: " + e);
+        } finally {
+            scheduled.set(false);
+            // A state or change may have come in between the last poll and the reset above
+            if ((latest.get() != null && !closed || !tasks.isEmpty()) && scheduled.compareAndSet(false, true)) {
+                pool.execute(this::drain);
+            }
+        }
+    }
+
+    // Runs the posted changes, guarded by imageLock
+    private void runTasks() {
+        Runnable task;
+        while ((task = tasks.poll()) != null) {
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                IJ.log("DeeJ: effects on " + imp.getTitle() + " failed: " + e);
+            }
+        }
+    }
+
+    // Effect thread: applies the state right away, after any state being applied and any change posted
+    // before; for replays that must not coalesce states
+    public void applyNow(FrameState state) {
+        synchronized (imageLock) {
+            runTasks();
+            apply(state);
+        }
+    }
+
+    // Guarded by imageLock
+    private void apply(FrameState state) {
+        if (closed) {
+            return;
+        }
+        long start = System.nanoTime();
+        settings = settingsSource.get();
+        long captured = state.getCaptureNanos();
+        latency.record(LatencyMetrics.Stage.SCHEDULED, captured);
+        // Events since the last state this image applied, none for the first one
+        int onsets = onsetsSeen < 0 ? 0 : (int) Math.min(Integer.MAX_VALUE, state.getOnsets() - onsetsSeen);
+        int beats = onsetsSeen < 0 ? 0 : (int) Math.min(Integer.MAX_VALUE, state.getBeats() - beatsSeen);
+        onsetsSeen = state.getOnsets();
+        beatsSeen = state.getBeats();
+
+        // Effects go to the proxy of a very large image, or to the image itself
+        ImagePlus target = imp;
+        boolean changed = false;
+        if (ProxyView.isSuitable(imp, settings.getProxyPixels())) {
+            if (proxy == null || !proxy.isCurrent(imp)) {
+                closeProxy();
+                proxy = new ProxyView(imp);
+            }
+            if (proxy.sync()) {
+                rebindProxy();
+                changed = true;
+            }
+            target = proxy.getImage();
+        } else {
+            closeProxy();
+        }
+        Action lut = actions[Effect.LUT.ordinal()];
+        // In Level mode the LUT changes once each time its band crosses the threshold
+        boolean lutCrossing = false;
+        if (state.getLevel(lut.band) > settings.getLutLevelThreshold()) {
+            lutCrossing = !lutChanged;
+            lutChanged = true;
+        } else {
+            lutChanged = false;
+        }
+        if (lut.enabled && (lut.trigger == Trigger.LEVEL ? lutCrossing : lut.trigger.fires(onsets, beats))) {
+            lutBank.setAllChannels(settings.isWholeStack());
+            lutBank.select(target, lutBank.randomIndex(random), settings.getLutFadeFrames());
+            changed = true;
+        } else if (lutBank.isFading()) {
+            changed |= lutBank.step(target);
+        }
+        // The position changes first so rotation and contrast apply to the plane now shown,
+        // moving draws the new plane by itself
+        Action scrub = actions[Effect.SCRUB.ordinal()];
+        boolean moved = false;
+        if (scrub.enabled) {
+            moved = adjustPosition(state, scrub, scrub.trigger.fires(onsets, beats));
+        } else {
+            closeScrubber();
+        }
+        // The mapped parameters follow the band on every frame; Level mode applies them on every frame,
+        // onset and beat modes only when they fired, and only once they moved enough to be seen
+        Action rotate = actions[Effect.ROTATE.ordinal()];
+        if (rotate.enabled) {
+            rotationFollower.setMapping(settings.getRotationMapping());
+            double step = rotationFollower.update(percentage(state, rotate.band), state.getSignalNanos());
+            if (rotate.trigger == Trigger.LEVEL || rotate.trigger.fires(onsets, beats)) {
+                pendingAngle += step;
+                if (pendingAngle != 0 && Math.abs(pendingAngle) >= rotationFollower.getThreshold()) {
+                    changed |= adjustRotation(target, pendingAngle);
+                    pendingAngle = 0;
+                }
+            }
+        }
+        Action contrast = actions[Effect.CONTRAST.ordinal()];
+        if (contrast.enabled) {
+            contrastFollower.setMapping(settings.getContrastMapping());
+            contrastFollower.update(percentage(state, contrast.band), state.getSignalNanos());
+            if ((contrast.trigger == Trigger.LEVEL || contrast.trigger.fires(onsets, beats))
+                    && contrastFollower.hasChanged()) {
+                changed |= adjustContrast(target, contrastFollower.take());
+            }
+        }
+        latency.record(LatencyMetrics.Stage.APPLIED, captured);
+        if (changed) {
+            redraw();
+        }
+        if (changed || moved) {
+            latency.record(LatencyMetrics.Stage.DRAWN, captured);
+        }
+        fading = lutBank.isFading();
+        applied.incrementAndGet();
+        maxApplyNanos = Math.max(maxApplyNanos, System.nanoTime() - start);
+    }
+
+    private void redraw() {
+        if (proxy != null) {
+            proxy.show();
+        } else {
+            beforeDraw.accept(imp);
+            imp.updateAndDraw();
+        }
+        draws++;
+    }
+
+    // The band level on the scale of the parameter curves
+    private double percentage(FrameState state, Band band) {
+        return state.getLevel(band) * 100.0 / settings.getLevelHeight();
+    }
+
+    // Returns true when the image still needs a redraw (the IJ.run path draws by itself)
+    private boolean adjustRotation(ImagePlus target, double rotationAngle) {
+        // A proxy is always redrawn from its pyramid, resampling it again would gain nothing
+        if (!settings.isNonDestructiveRotation() && target == imp) {
+            // Resampling in place makes the pixels as shown the new original
+            rotationRenderer = null;
+            IJ.run(imp, "Rotate... ", "angle=" + rotationAngle + (settings.isWholeStack() ? " stack" : ""));
+            return false;
+        }
+        // Redraw from the original pixels kept by the renderer, rebuilt when the image or slice changes
+        if (rotationRenderer == null || !rotationRenderer.isCurrent(target)
+                || rotationRenderer.isWholeStack() != settings.isWholeStack()) {
+            // The planes drawn so far get their originals back first, the new renderer copies untouched
+            // pixels and goes on at the same angle
+            double angle = rotationRenderer != null && rotationRenderer.getImage() == target
+                    ? rotationRenderer.getAngle() : 0;
+            releaseRotation();
+            rotationRenderer = new StackRotationRenderer(target, settings.isWholeStack());
+            rotationRenderer.setAngle(angle);
+        }
+        rotationRenderer.rotateBy(rotationAngle);
+        rotationRenderer.render();
+        return true;
+    }
+
+    // Puts the original pixels back into every plane the renderer drew into and drops it, returns true
+    // when the image needs a redraw. A renderer of a discarded proxy is dropped without this
+    private boolean releaseRotation() {
+        if (rotationRenderer == null) {
+            return false;
+        }
+        boolean rotated = rotationRenderer.getAngle() != 0;
+        rotationRenderer.restore();
+        rotationRenderer = null;
+        return rotated;
+    }
+
+    // Returns true when the display range was set (false for RGB), the caller redraws
+    private boolean adjustContrast(ImagePlus target, double factor) {
+        // Narrows the display range the image had when first adjusted, no pixel is converted
+        if (stackContrast == null || !stackContrast.isCurrent(target)) {
+            stackContrast = new StackContrast(target);
+        }
+        contrastFactor = factor;
+        return stackContrast.apply(contrastFactor, settings.isWholeStack());
+    }
+
+    // The proxy was cut again for another view: redraws its untouched pixels at the current angle
+    // and contrast, its display range starts from the image's own as the contrast baseline
+    private void rebindProxy() {
+        ImagePlus target = proxy.getImage();
+        if (rotationRenderer != null && rotationRenderer.getAngle() != 0) {
+            double angle = rotationRenderer.getAngle();
+            rotationRenderer = new StackRotationRenderer(target, false);
+            rotationRenderer.setAngle(angle);
+            rotationRenderer.render();
+        } else {
+            rotationRenderer = null;
+        }
+        if (stackContrast != null) {
+            stackContrast = new StackContrast(target);
+            stackContrast.apply(contrastFactor, false);
+        }
+    }
+
+    // Writes what the proxy shows into the full-resolution image, once, on the worker; later effects
+    // start from there. The proxy stays when the image could not be rotated
+    public void commit() {
+        post(() -> {
+            if (closed || proxy == null) {
+                return;
+            }
+            if (!proxy.commit(rotationRenderer != null ? rotationRenderer.getAngle() : 0)) {
+                return;
+            }
+            proxy = null;
+            rotationRenderer = null;
+            stackContrast = null;
+            contrastFactor = 1;
+            beforeDraw.accept(imp);
+            imp.updateAndDraw();
+        });
+    }
+
+    public boolean hasProxy() {
+        return proxy != null;
+    }
+
+    // Shows the full-resolution image as it was, the proxy's look is lost
+    private void closeProxy() {
+        if (proxy != null) {
+            proxy.close();
+            proxy = null;
+            rotationRenderer = null;
+            stackContrast = null;
+        }
+    }
+
+    // Moves the Z or T position with the scrub band, the beat phase or one step per onset,
+    // returns true when another plane is shown
+    private boolean adjustPosition(FrameState state, Action scrub, boolean fired) {
+        if (imp.getStackSize() < 2) {
+            return false;
+        }
+        if (scrubber == null || !scrubber.isCurrent(imp)) {
+            closeScrubber();
+            scrubber = new StackScrubber(imp, settings.getScrubAxis(), settings.getSliceCacheBytes(),
+                    settings.getPrefetchSlices());
+        }
+        switch (scrub.trigger) {
+            case BEAT:
+                return scrubber.moveTo(scrubber.positionOf(state.getBeatPhase()));
+            case ONSET:
+                return fired && scrubber.step(1);
+            default:
+                return scrubber.moveTo(scrubber.positionOf(state.getLevel(scrub.band)
+                        / (double) settings.getLevelMaximum()));
+        }
+    }
+
+    // Gives a virtual stack its own stack back and frees the slice cache
+    private void closeScrubber() {
+        if (scrubber != null) {
+            scrubber.close();
+            scrubber = null;
+        }
+    }
+
+    // Starts the random LUT choice over from the seed and the smoothing from the next level, for a
+    // new capture or replay; takes effect before the next state
+    public void restart() {
+        post(() -> {
+            settings = settingsSource.get();
+            random.setSeed(settings.getSeed());
+            rotationFollower.reset();
+            contrastFollower.reset();
+        });
+    }
+
+    // Drops the renderers so they are rebuilt with the current settings on the next state, the
+    // image gets its original pixels back
+    public void reset() {
+        post(() -> {
+            settings = settingsSource.get();
+            closeProxy();
+            if (releaseRotation() && !closed) {
+                redraw();
+            }
+            stackContrast = null;
+            closeScrubber();
+        });
+    }
+
+    // Stops applying states; the worker puts the original pixels back and releases the slice cache
+    // once a state being applied is done
+    public void close() {
+        closed = true;
+        latest.set(null);
+        post(() -> {
+            closeScrubber();
+            closeProxy();
+            if (releaseRotation() && imp.getWindow() != null) {
+                redraw();
+            }
+        });
+    }
+
+    public String getSummary() {
+        StackScrubber currentScrubber = scrubber;
+        ProxyView currentProxy = proxy;
+        return imp.getTitle() + ": " + applied.get() + " states applied, " + draws + " redraws, " + coalesced.get()
+                + " skipped while busy, slowest " + String.format("%.1f", maxApplyNanos / 1e6) + " ms"
+                + (currentScrubber != null ? "; scrub " + currentScrubber.getSummary() : "")
+                + (currentProxy != null ? "; proxy at 1/" + (1 << currentProxy.getLevel()) : "");
+    }
+}
@@ -0,0 +1,194 @@
+/*
+ * DeeJ - An ImageJ plugin detects sound levels of mic or computer and triggers Fiji commands on the currently active window based on a defined threshold.
+ * 
+ * License: This software is provided under the GNU General Public License (GPL) version 3.
+ * Copyright (c) 2025 Hugo LE GUENNO
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package deej.render;
+
+/**
+ * Settings shared by every target's pipeline, as an immutable snapshot held in the engine's
+ * configuration. The dialog or a script derives a changed copy with the with methods and hands it
+ * over in one step; each pipeline takes one snapshot per state, so a frame never mixes old and new
+ * settings.
+ */
+public final class EffectSettings {
+
+    // Rotation redraws from the original pixels instead of resampling the image again with IJ.run
+    private boolean nonDestructiveRotation = true;
+    // Effects cover every slice, channel and frame of a stack instead of the displayed plane
+    private boolean wholeStack = false;
+    // Number of frames a LUT change fades over, 0 switches at once
+    private int lutFadeFrames = 0;
+    // Level a LUT change fires at when the LUT trigger is set to Level
+    private int lutLevelThreshold = 700;
+    // Seed of the random LUT choice, the same seed and feature log give the same show
+    private long seed = 1;
+    private StackScrubber.Axis scrubAxis = StackScrubber.Axis.Z;
+    // Decoded slices kept for scrubbing virtual stacks, and positions read ahead of the audio
+    private long sliceCacheBytes = 512L << 20;
+    private int prefetchSlices = 8;
+    // Single-plane images of at least this many pixels get live effects at screen resolution only, 0 = never
+    private long proxyPixels = 16_000_000L;
+    // How levels drive the rotation step and the contrast factor
+    private ParameterMapping rotationMapping = ParameterMapping.ROTATION;
+    private ParameterMapping contrastMapping = ParameterMapping.CONTRAST;
+    // Levels are in progress bar units: the bar's height, which is also the level of a feature value
+    // of 1 at 100 % sensitivity, and its full scale
+    private int levelHeight = 100;
+    private int levelMaximum = 1000;
+
+    public EffectSettings() {
+    }
+
+    private EffectSettings copy() {
+        EffectSettings settings = new EffectSettings();
+        settings.nonDestructiveRotation = nonDestructiveRotation;
+        settings.wholeStack = wholeStack;
+        settings.lutFadeFrames = lutFadeFrames;
+        settings.lutLevelThreshold = lutLevelThreshold;
+        settings.seed = seed;
+        settings.scrubAxis = scrubAxis;
+        settings.sliceCacheBytes = sliceCacheBytes;
+        settings.prefetchSlices = prefetchSlices;
+        settings.proxyPixels = proxyPixels;
+        settings.rotationMapping = rotationMapping;
+        settings.contrastMapping = contrastMapping;
+        settings.levelHeight = levelHeight;
+        settings.levelMaximum = levelMaximum;
+        return settings;
+    }
+
+    public boolean isNonDestructiveRotation() {
+        return nonDestructiveRotation;
+    }
+
+    public EffectSettings withNonDestructiveRotation(boolean nonDestructiveRotation) {
+        EffectSettings settings = copy();
+        settings.nonDestructiveRotation = nonDestructiveRotation;
+        return settings;
+    }
+
+    public boolean isWholeStack() {
+        return wholeStack;
+    }
+
+    public EffectSettings withWholeStack(boolean wholeStack) {
+        EffectSettings settings = copy();
+        settings.wholeStack = wholeStack;
+        return settings;
+    }
+
+    public int getLutFadeFrames() {
+        return lutFadeFrames;
+    }
+
+    public EffectSettings withLutFadeFrames(int lutFadeFrames) {
+        EffectSettings settings = copy();
+        settings.lutFadeFrames = Math.max(0, lutFadeFrames);
+        return settings;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    public EffectSettings withSeed(long seed) {
+        EffectSettings settings = copy();
+        settings.seed = seed;
+        return settings;
+    }
+
+    public int getLutLevelThreshold() {
+        return lutLevelThreshold;
+    }
+
+    public EffectSettings withLutLevelThreshold(int lutLevelThreshold) {
+        EffectSettings settings = copy();
+        settings.lutLevelThreshold = lutLevelThreshold;
+        return settings;
+    }
+
+    public StackScrubber.Axis getScrubAxis() {
+        return scrubAxis;
+    }
+
+    public long getSliceCacheBytes() {
+        return sliceCacheBytes;
+    }
+
+    public int getPrefetchSlices() {
+        return prefetchSlices;
+    }
+
+    // The scrub axis and how a virtual stack is read along it, together since a scrubber is built from all three
+    public EffectSettings withScrub(StackScrubber.Axis scrubAxis, long sliceCacheBytes, int prefetchSlices) {
+        EffectSettings settings = copy();
+        settings.scrubAxis = scrubAxis;
+        settings.sliceCacheBytes = Math.max(0, sliceCacheBytes);
+        settings.prefetchSlices = Math.max(0, prefetchSlices);
+        return settings;
+    }
+
+    public long getProxyPixels() {
+        return proxyPixels;
+    }
+
+    public EffectSettings withProxyPixels(long proxyPixels) {
+        EffectSettings settings = copy();
+        settings.proxyPixels = Math.max(0, proxyPixels);
+        return settings;
+    }
+
+    public ParameterMapping getRotationMapping() {
+        return rotationMapping;
+    }
+
+    public ParameterMapping getContrastMapping() {
+        return contrastMapping;
+    }
+
+    public EffectSettings withMappings(ParameterMapping rotationMapping, ParameterMapping contrastMapping) {
+        EffectSettings settings = copy();
+        settings.rotationMapping = rotationMapping;
+        settings.contrastMapping = contrastMapping;
+        return settings;
+    }
+
+    public int getLevelHeight() {
+        return levelHeight;
+    }
+
+    public int getLevelMaximum() {
+        return levelMaximum;
+    }
+
+    // Both from the plugin's bar, the analysis scales its levels with the same height
+    public EffectSettings withLevels(int levelHeight, int levelMaximum) {
+        EffectSettings settings = copy();
+        settings.levelHeight = Math.max(1, levelHeight);
+        settings.levelMaximum = Math.max(1, levelMaximum);
+        return settings;
+    }
+
+    // True when pipelines must rebuild their renderers and scrubbers to follow the change to other
+    public boolean needsRebuild(EffectSettings other) {
+        return wholeStack != other.wholeStack || scrubAxis != other.scrubAxis
+                || sliceCacheBytes != other.sliceCacheBytes || prefetchSlices != other.prefetchSlices
+                || proxyPixels != other.proxyPixels;
+    }
+}
@@ -0,0 +1,79 @@
+/*
+ * DeeJ - An ImageJ plugin detects sound levels of mic or computer and triggers Fiji commands on the currently active window based on a defined threshold.
+ * 
+ * License: This software is provided under the GNU General Public License (GPL) version 3.
+ * Copyright (c) 2025 Hugo LE GUENNO
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package deej.render;
+
+import deej.analysis.Band;
+
+/**
+ * One frame's worth of the shared feature stream, handed to every target pipeline. Onsets and beats
+ * are running totals since the start of the capture, so a pipeline that skipped frames still sees
+ * every event since the last state it applied.
+ */
+public final class FrameState {
+
+    private final int[] levels;
+    private final long onsets;
+    private final long beats;
+    private final float beatPhase;
+    private final long captureNanos;
+    private final long signalNanos;
+
+    // levels holds one entry per Band in progress bar units and is not copied
+    public FrameState(int[] levels, long onsets, long beats, float beatPhase, long captureNanos) {
+        this(levels, onsets, beats, beatPhase, captureNanos, captureNanos);
+    }
+
+    public FrameState(int[] levels, long onsets, long beats, float beatPhase, long captureNanos, long signalNanos) {
+        this.levels = levels;
+        this.onsets = onsets;
+        this.beats = beats;
+        this.beatPhase = beatPhase;
+        this.captureNanos = captureNanos;
+        this.signalNanos = signalNanos;
+    }
+
+    public int getLevel(Band band) {
+        return levels[band.ordinal()];
+    }
+
+    public long getOnsets() {
+        return onsets;
+    }
+
+    public long getBeats() {
+        return beats;
+    }
+
+    public float getBeatPhase() {
+        return beatPhase;
+    }
+
+    // Capture stamp of the block behind this state, for the audio-to-pixel latency
+    public long getCaptureNanos() {
+        return captureNanos;
+    }
+
+    // Time of the block on the signal's own clock: the capture stamp live, the logged time in a
+    // replay. Smoothing runs on it, so a replay does not depend on how fast the frames are drawn
+    public long getSignalNanos() {
+        return signalNanos;
+    }
+}
@@ -0,0 +1,189 @@
+/*
+ * DeeJ - An ImageJ plugin detects sound levels of mic or computer and triggers Fiji commands on the currently active window based on a defined threshold.
+ * 
+ * License: This software is provided under the GNU General Public License (GPL) version 3.
+ * Copyright (c) 2025 Hugo LE GUENNO
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package deej.render;
+
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import ij.process.ByteProcessor;
+import ij.process.ColorProcessor;
+import ij.process.FloatProcessor;
+import ij.process.ImageProcessor;
+import ij.process.ShortProcessor;
+
+/**
+ * Downsampled copies of one plane, each half the size of the previous one, for drawing a very large
+ * image at screen resolution. Level 0 is the plane itself, shared and not copied; every other level
+ * averages 2x2 pixels of the one above it, rows split across a fork-join pool. The levels together
+ * take a third of the memory of the plane.
+ */
+public class ImagePyramid {
+
+    // Levels stop once both sides fit in this many pixels
+    private static final int MIN_SIZE = 256;
+    private static final int MIN_ROWS_PER_TASK = 32;
+
+    private final List<ImageProcessor> levels = new ArrayList<ImageProcessor>();
+
+    public ImagePyramid(ImageProcessor plane, ForkJoinPool pool) {
+        levels.add(plane);
+        ImageProcessor level = plane;
+        while ((level.getWidth() > MIN_SIZE || level.getHeight() > MIN_SIZE)
+                && level.getWidth() >= 2 && level.getHeight() >= 2) {
+            level = halve(level, pool);
+            levels.add(level);
+        }
+    }
+
+    public ImagePyramid(ImageProcessor plane) {
+        this(plane, ForkJoinPool.commonPool());
+    }
+
+    public int getLevelCount() {
+        return levels.size();
+    }
+
+    public ImageProcessor getLevel(int level) {
+        return levels.get(level);
+    }
+
+    // The coarsest level that still has at least one pixel per screen pixel at this magnification
+    public int levelFor(double magnification) {
+        int level = 0;
+        while (level + 1 < levels.size() && magnification * (1 << (level + 1)) <= 1) {
+            level++;
+        }
+        return level;
+    }
+
+    // Pixels of level covering region, given in level 0 coordinates; the region is widened to whole
+    // level pixels and the result's area in level 0 coordinates is written back into region
+    public ImageProcessor crop(int level, Rectangle region) {
+        ImageProcessor ip = levels.get(level);
+        int x0 = Math.max(0, region.x >> level);
+        int y0 = Math.max(0, region.y >> level);
+        int x1 = Math.min(ip.getWidth(), (region.x + region.width + (1 << level) - 1) >> level);
+        int y1 = Math.min(ip.getHeight(), (region.y + region.height + (1 << level) - 1) >> level);
+        region.setBounds(x0 << level, y0 << level, (x1 - x0) << level, (y1 - y0) << level);
+        ip.setRoi(x0, y0, x1 - x0, y1 - y0);
+        ImageProcessor cropped = ip.crop();
+        ip.resetRoi();
+        return cropped;
+    }
+
+    private static ImageProcessor halve(ImageProcessor source, ForkJoinPool pool) {
+        int width = source.getWidth() / 2;
+        int height = source.getHeight() / 2;
+        ImageProcessor target;
+        if (source instanceof ByteProcessor) {
+            target = new ByteProcessor(width, height);
+        } else if (source instanceof ShortProcessor) {
+            target = new ShortProcessor(width, height);
+        } else if (source instanceof FloatProcessor) {
+            target = new FloatProcessor(width, height);
+        } else {
+            target = new ColorProcessor(width, height);
+        }
+        target.setColorModel(source.getColorModel());
+        pool.invoke(new RowTask(source, target, 0, height));
+        target.setMinAndMax(source.getMin(), source.getMax());
+        return target;
+    }
+
+    private static class RowTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+        private final ImageProcessor source;
+        private final ImageProcessor target;
+        private final int y0;
+        private final int y1;
+
+        RowTask(ImageProcessor source, ImageProcessor target, int y0, int y1) {
+            this.source = source;
+            this.target = target;
+            this.y0 = y0;
+            this.y1 = y1;
+        }
+
+        @Override
+        protected void compute() {
+            if (y1 - y0 <= MIN_ROWS_PER_TASK) {
+                halveRows(source, target, y0, y1);
+                return;
+            }
+            int mid = (y0 + y1) >>> 1;
+            invokeAll(new RowTask(source, target, y0, mid), new RowTask(source, target, mid, y1));
+        }
+    }
+
+    private static void halveRows(ImageProcessor source, ImageProcessor target, int y0, int y1) {
+        int sw = source.getWidth();
+        int width = target.getWidth();
+        Object in = source.getPixels();
+        Object out = target.getPixels();
+        for (int y = y0; y < y1; y++) {
+            int top = 2 * y * sw;
+            int bottom = top + sw;
+            int row = y * width;
+            if (in instanceof byte[]) {
+                byte[] src = (byte[]) in;
+                byte[] dst = (byte[]) out;
+                for (int x = 0; x < width; x++) {
+                    int i = 2 * x;
+                    dst[row + x] = (byte) (((src[top + i] & 0xff) + (src[top + i + 1] & 0xff)
+                            + (src[bottom + i] & 0xff) + (src[bottom + i + 1] & 0xff) + 2) >> 2);
+                }
+            } else if (in instanceof short[]) {
+                short[] src = (short[]) in;
+                short[] dst = (short[]) out;
+                for (int x = 0; x < width; x++) {
+                    int i = 2 * x;
+                    dst[row + x] = (short) (((src[top + i] & 0xffff) + (src[top + i + 1] & 0xffff)
+                            + (src[bottom + i] & 0xffff) + (src[bottom + i + 1] & 0xffff) + 2) >> 2);
+                }
+            } else if (in instanceof float[]) {
+                float[] src = (float[]) in;
+                float[] dst = (float[]) out;
+                for (int x = 0; x < width; x++) {
+                    int i = 2 * x;
+                    dst[row + x] = (src[top + i] + src[top + i + 1] + src[bottom + i] + src[bottom + i + 1]) * 0.25f;
+                }
+            } else {
+                int[] src = (int[]) in;
+                int[] dst = (int[]) out;
+                for (int x = 0; x < width; x++) {
+                    int i = 2 * x;
+                    int a = src[top + i];
+                    int b = src[top + i + 1];
+                    int c = src[bottom + i];
+                    int d = src[bottom + i + 1];
+                    int r = (((a >> 16) & 0xff) + ((b >> 16) & 0xff) + ((c >> 16) & 0xff) + ((d >> 16) & 0xff) + 2) >> 2;
+                    int g = (((a >> 8) & 0xff) + ((b >> 8) & 0xff) + ((c >> 8) & 0xff) + ((d >> 8) & 0xff) + 2) >> 2;
+                    int bl = ((a & 0xff) + (b & 0xff) + (c & 0xff) + (d & 0xff) + 2) >> 2;
+                    dst[row + x] = 0xff000000 | (r << 16) | (g << 8) | bl;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,282 @@
+/*
+ * DeeJ - An ImageJ plugin detects sound levels of mic or computer and triggers Fiji commands on the currently active window based on a defined threshold.
+ * 
+ * License: This software is provided under the GNU General Public License (GPL) version 3.
+ * Copyright (c) 2025 Hugo LE GUENNO
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package deej.render;
+
+import java.awt.image.ColorModel;
+import java.awt.image.IndexColorModel;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+import ij.process.ByteProcessor;
+import ij.process.ColorProcessor;
+import ij.process.FloatProcessor;
+import ij.process.ImageProcessor;
+import ij.process.ShortProcessor;
+
+/**
+ * Window/level, gamma and LUT remapping of 8, 16 and 32-bit pixels into RGB pixels, straight from
+ * the pixel arrays so the image keeps its bit depth. With a gamma of 1 this is the mapping ImageJ
+ * uses to display each type; RGB pixels get the window and gamma on each channel. Everything that
+ * does not depend on the pixel is folded into one table per type, 256 entries for 8-bit, 65536 for
+ * 16-bit and FLOAT_STEPS for 32-bit, built again only when the window, gamma or colours change.
+ * Bands of rows are spread over a fork-join pool. Not thread-safe, each thread keeps its own kernel.
+ */
+public class IntensityKernel {
+
+    // Steps between the window's minimum and maximum for 32-bit data, finer than the 256 colours
+    private static final int FLOAT_STEPS = 4096;
+    private static final int MIN_PIXELS_PER_TASK = 1 << 16;
+
+    private final ForkJoinPool pool;
+    private final int[] colors = new int[256];
+    // Colour model the colours were last read from, immutable so the same model gives the same colours
+    private ColorModel colorSource;
+    private final int[] sourceRgbs = new int[256];
+    private double min = 0;
+    private double max = 255;
+    private double gamma = 1;
+    // Tables are kept and refilled, a false flag means the settings changed since they were filled
+    private final int[] byteTable = new int[256];
+    private final int[] rgbTable = new int[256];
+    private int[] shortTable;
+    private int[] floatTable;
+    private boolean byteValid;
+    private boolean rgbValid;
+    private boolean shortValid;
+    private boolean floatValid;
+
+    public IntensityKernel(ForkJoinPool pool) {
+        this.pool = pool;
+        for (int i = 0; i < 256; i++) {
+            colors[i] = 0xff000000 | i << 16 | i << 8 | i;
+        }
+    }
+
+    public IntensityKernel() {
+        this(ForkJoinPool.commonPool());
+    }
+
+    // Values at or below min take the first colour, at or above max the last
+    public void setWindow(double min, double max) {
+        if (min != this.min || max != this.max) {
+            this.min = min;
+            this.max = max;
+            invalidate();
+        }
+    }
+
+    // Above 1 darkens the middle of the window, below 1 brightens it
+    public void setGamma(double gamma) {
+        double checked = gamma > 0 ? gamma : 1;
+        if (checked != this.gamma) {
+            this.gamma = checked;
+            invalidate();
+        }
+    }
+
+    // 256 RGB colours, index 0 at the bottom of the window; ignored for RGB pixels
+    public void setColors(int[] colors) {
+        colorSource = null;
+        copyColors(colors);
+    }
+
+    // Read again only when the LUT is another one, nothing is allocated for the same LUT
+    public void setColors(IndexColorModel lut) {
+        if (lut != colorSource) {
+            Arrays.fill(sourceRgbs, 0);
+            lut.getRGBs(sourceRgbs);
+            copyColors(sourceRgbs);
+            colorSource = lut;
+        }
+    }
+
+    private void copyColors(int[] colors) {
+        if (!Arrays.equals(colors, this.colors)) {
+            System.arraycopy(colors, 0, this.colors, 0, 256);
+            invalidate();
+        }
+    }
+
+    // Window and colours of ip as ImageJ displays it, gamma unchanged; called on every frame, the
+    // tables are only filled again when the window or the LUT changed
+    public void setDisplay(ImageProcessor ip) {
+        setWindow(ip.getMin(), ip.getMax());
+        if (!(ip instanceof ColorProcessor) && ip.getColorModel() instanceof IndexColorModel) {
+            setColors((IndexColorModel) ip.getColorModel());
+        }
+    }
+
+    private void invalidate() {
+        byteValid = false;
+        rgbValid = false;
+        shortValid = false;
+        floatValid = false;
+    }
+
+    // Maps every pixel of ip into out, which is reused when it has the right size; returns the pixels
+    public int[] apply(ImageProcessor ip, int[] out) {
+        int size = ip.getWidth() * ip.getHeight();
+        int[] rgb = out != null && out.length == size ? out : new int[size];
+        Object pixels = ip.getPixels();
+        int[] table;
+        if (ip instanceof ByteProcessor) {
+            table = byteTable();
+        } else if (ip instanceof ShortProcessor) {
+            table = shortTable();
+        } else if (ip instanceof FloatProcessor) {
+            table = floatTable();
+        } else {
+            table = rgbTable();
+        }
+        BandTask task = new BandTask(pixels, table, rgb, ip.getWidth(), 0, ip.getHeight());
+        if (size <= MIN_PIXELS_PER_TASK) {
+            task.compute();
+        } else if (ForkJoinTask.inForkJoinPool()) {
+            // Already on a pool worker, as when the batch renders frames in parallel: split in place
+            task.invoke();
+        } else {
+            pool.invoke(task);
+        }
+        return rgb;
+    }
+
+    // Position in [0, 256) colour units, curved by the gamma and clamped to a colour index
+    private int index(double position) {
+        if (gamma != 1 && position > 0) {
+            position = 256 * Math.pow(Math.min(1, position / 256), gamma);
+        }
+        int index = (int) position;
+        return index < 0 ? 0 : index > 255 ? 255 : index;
+    }
+
+    private int[] byteTable() {
+        if (!byteValid) {
+            for (int i = 0; i < 256; i++) {
+                byteTable[i] = colors[index(256.0 * (i - min) / (max - min + 1))];
+            }
+            byteValid = true;
+        }
+        return byteTable;
+    }
+
+    // One entry per 16-bit value is cheaper than scaling every pixel of a large frame
+    private int[] shortTable() {
+        if (!shortValid) {
+            if (shortTable == null) {
+                shortTable = new int[65536];
+            }
+            double scale = 256.0 / (max - min + 1);
+            for (int i = 0; i < 65536; i++) {
+                double value = Math.max(0, i - min);
+                shortTable[i] = colors[index(value * scale + 0.5)];
+            }
+            shortValid = true;
+        }
+        return shortTable;
+    }
+
+    private int[] floatTable() {
+        if (!floatValid) {
+            if (floatTable == null) {
+                floatTable = new int[FLOAT_STEPS];
+            }
+            for (int i = 0; i < FLOAT_STEPS; i++) {
+                floatTable[i] = colors[index(i * 255.0 / (FLOAT_STEPS - 1) + 0.5)];
+            }
+            floatValid = true;
+        }
+        return floatTable;
+    }
+
+    private int[] rgbTable() {
+        if (!rgbValid) {
+            for (int i = 0; i < 256; i++) {
+                rgbTable[i] = index(256.0 * (i - min) / (max - min + 1));
+            }
+            rgbValid = true;
+        }
+        return rgbTable;
+    }
+
+    private class BandTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+        private final Object pixels;
+        private final int[] table;
+        private final int[] out;
+        private final int width;
+        private final int y0;
+        private final int y1;
+
+        BandTask(Object pixels, int[] table, int[] out, int width, int y0, int y1) {
+            this.pixels = pixels;
+            this.table = table;
+            this.out = out;
+            this.width = width;
+            this.y0 = y0;
+            this.y1 = y1;
+        }
+
+        @Override
+        protected void compute() {
+            if ((long) (y1 - y0) * width <= MIN_PIXELS_PER_TASK || y1 - y0 < 2) {
+                map(pixels, table, out, y0 * width, y1 * width);
+                return;
+            }
+            int mid = (y0 + y1) >>> 1;
+            invokeAll(new BandTask(pixels, table, out, width, y0, mid),
+                    new BandTask(pixels, table, out, width, mid, y1));
+        }
+    }
+
+    // Pixels [from, to) through the table of their type
+    private void map(Object pixels, int[] table, int[] out, int from, int to) {
+        if (pixels instanceof byte[]) {
+            byte[] in = (byte[]) pixels;
+            for (int i = from; i < to; i++) {
+                out[i] = table[in[i] & 0xff];
+            }
+        } else if (pixels instanceof short[]) {
+            short[] in = (short[]) pixels;
+            for (int i = from; i < to; i++) {
+                out[i] = table[in[i] & 0xffff];
+            }
+        } else if (pixels instanceof float[]) {
+            float[] in = (float[]) pixels;
+            float low = (float) min;
+            float scale = max > min ? (float) ((FLOAT_STEPS - 1) / (max - min)) : 1;
+            int last = FLOAT_STEPS - 1;
+            for (int i = from; i < to; i++) {
+                // NaN fails the comparison and takes the first colour, as in ImageJ
+                float step = in[i] > low ? (in[i] - low) * scale + 0.5f : 0;
+                out[i] = table[step < last ? (int) step : last];
+            }
+        } else {
+            int[] in = (int[]) pixels;
+            for (int i = from; i < to; i++) {
+                int c = in[i];
+                out[i] = table[(c >> 16) & 0xff] << 16 | table[(c >> 8) & 0xff] << 8 | table[c & 0xff];
+            }
+        }
+    }
+}
@@ -0,0 +1,268 @@
+/*
+ * DeeJ - An ImageJ plugin detects sound levels of mic or computer and triggers Fiji commands on the currently active window based on a defined threshold.
+ * 
+ * License: This software is provided under the GNU General Public License (GPL) version 3.
+ * Copyright (c) 2025 Hugo LE GUENNO
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package deej.render;
+
+import java.awt.image.IndexColorModel;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import ij.CompositeImage;
+import ij.IJ;
+import ij.ImagePlus;
+import ij.plugin.LutLoader;
+import ij.process.ImageProcessor;
+import ij.process.LUT;
+
+/**
+ * LUTs decoded once into memory, so a trigger only swaps the color model of the image.
+ * No command dispatch and no file access after construction. Optionally crossfades between
+ * the current and the next LUT over a number of frames. Nothing here redraws the image.
+ */
+public class LutBank {
+
+    // LUTs DeeJ picks from, on top of the user's luts/DeeJ folder
+    public static final String[] DEFAULT_NAMES = {
+            "Red", "Green", "Blue", "Cyan", "Magenta", "Yellow Hot", "Spectrum", "Ice", "Fire",
+            "Rainbow RGB", "Cyan Hot", "Orange Hot", "5_Ramps", "Gem"
+    };
+
+    // Decoded once and never modified, shared by the copies made for other images
+    private final List<String> names;
+    private final List<LUT> luts;
+    // Channels of every LUT, 256 entries each, for crossfading
+    private byte[][] reds = new byte[0][];
+    private byte[][] greens = new byte[0][];
+    private byte[][] blues = new byte[0][];
+
+    // Crossfade state, only touched from the thread that applies LUTs to this bank's image. Two sets of
+    // colours in turn: the blend of this frame and the one on the image, compared to skip unchanged frames
+    private final byte[][] fadeColors = new byte[6][256];
+    private int fadeSet;
+    private int current = -1;
+    private int fadeFrom = -1;
+    private int fadeFrame;
+    private int fadeFrames;
+    // Multi-channel images get the LUT on every channel instead of the current one
+    private boolean allChannels;
+
+    // Loads the named LUTs (built-in or from the ImageJ luts folder) and every .lut file in userDir
+    public LutBank(String[] lutNames, File userDir) {
+        names = new ArrayList<String>();
+        luts = new ArrayList<LUT>();
+        for (String name : lutNames) {
+            IndexColorModel cm = LutLoader.getLut(name);
+            if (cm == null) {
+                IJ.log("DeeJ: LUT not found, skipped: " + name);
+                continue;
+            }
+            add(name, cm);
+        }
+        if (userDir != null && userDir.isDirectory()) {
+            File[] files = userDir.listFiles((dir, fileName) -> fileName.toLowerCase().endsWith(".lut"));
+            if (files != null) {
+                Arrays.sort(files);
+                for (File file : files) {
+                    try {
+                        add(file.getName().substring(0, file.getName().length() - 4), LutLoader.open(file.getPath()));
+                    } catch (IOException e) {
+                        IJ.log("DeeJ: could not read LUT " + file.getName() + ": " + e.getMessage());
+                    }
+                }
+            }
+        }
+        reds = new byte[luts.size()][256];
+        greens = new byte[luts.size()][256];
+        blues = new byte[luts.size()][256];
+        for (int i = 0; i < luts.size(); i++) {
+            LUT lut = luts.get(i);
+            lut.getReds(reds[i]);
+            lut.getGreens(greens[i]);
+            lut.getBlues(blues[i]);
+        }
+    }
+
+    // Shares the decoded LUTs of bank with a crossfade state of its own, for driving another image
+    public LutBank(LutBank bank) {
+        names = bank.names;
+        luts = bank.luts;
+        reds = bank.reds;
+        greens = bank.greens;
+        blues = bank.blues;
+    }
+
+    // The default names plus the luts/DeeJ folder of the ImageJ installation
+    public static LutBank createDefault() {
+        String lutDir = IJ.getDir("luts");
+        return new LutBank(DEFAULT_NAMES, lutDir != null ? new File(lutDir, "DeeJ") : null);
+    }
+
+    private void add(String name, IndexColorModel cm) {
+        if (cm.getMapSize() != 256) {
+            IJ.log("DeeJ: LUT skipped, not 256 entries: " + name);
+            return;
+        }
+        names.add(name);
+        luts.add(cm instanceof LUT ? (LUT) cm : new LUT(cm, 0, 0));
+    }
+
+    public int size() {
+        return luts.size();
+    }
+
+    public String getName(int index) {
+        return names.get(index);
+    }
+
+    public LUT getLut(int index) {
+        return luts.get(index);
+    }
+
+    public void setAllChannels(boolean allChannels) {
+        this.allChannels = allChannels;
+    }
+
+    // Index of the LUT shown last, -1 before the first apply
+    public int getCurrent() {
+        return current;
+    }
+
+    // Random index different from the current one whenever there is a choice
+    public int randomIndex(Random random) {
+        return randomIndex(random, current);
+    }
+
+    // Same for a caller tracking its own current index, -1 for none
+    public int randomIndex(Random random, int current) {
+        if (luts.size() < 2) {
+            return luts.isEmpty() ? -1 : 0;
+        }
+        int index = random.nextInt(luts.size() - 1);
+        return index >= current && current >= 0 ? index + 1 : index;
+    }
+
+    // Shows LUT index on the image, fading over frames calls of step() when frames > 0
+    public void select(ImagePlus imp, int index, int frames) {
+        if (index < 0 || index >= luts.size()) {
+            return;
+        }
+        if (frames > 0 && current >= 0 && current != index) {
+            // A fade still running is cut short and the new one starts from its target
+            fadeSet = -1;
+            fadeFrom = current;
+            fadeFrame = 0;
+            fadeFrames = frames;
+            current = index;
+            step(imp);
+        } else {
+            fadeFrom = -1;
+            current = index;
+            apply(imp, luts.get(index), allChannels);
+        }
+    }
+
+    public boolean isFading() {
+        return fadeFrom >= 0;
+    }
+
+    // Advances a running crossfade by one frame, returns false when there is nothing to do or the
+    // colours did not change since the previous frame
+    public boolean step(ImagePlus imp) {
+        if (!isFading()) {
+            return false;
+        }
+        fadeFrame++;
+        if (fadeFrame >= fadeFrames) {
+            fadeFrom = -1;
+            apply(imp, luts.get(current), allChannels);
+            return true;
+        }
+        int next = fadeSet == 0 ? 3 : 0;
+        byte[] red = fadeColors[next];
+        byte[] green = fadeColors[next + 1];
+        byte[] blue = fadeColors[next + 2];
+        blend(fadeFrom, current, (float) fadeFrame / fadeFrames, red, green, blue);
+        // Long fades between close LUTs repeat the same colours, only a change needs a new colour model
+        if (fadeSet >= 0 && Arrays.equals(red, fadeColors[fadeSet]) && Arrays.equals(green, fadeColors[fadeSet + 1])
+                && Arrays.equals(blue, fadeColors[fadeSet + 2])) {
+            return false;
+        }
+        fadeSet = next;
+        // The colour model has to be a new object, ImageJ keeps the one it is given
+        apply(imp, new LUT(red, green, blue), allChannels);
+        return true;
+    }
+
+    // New LUT t of the way from one LUT to another, safe to call from any thread
+    public LUT getBlend(int from, int to, float t) {
+        byte[] red = new byte[256];
+        byte[] green = new byte[256];
+        byte[] blue = new byte[256];
+        blend(from, to, t, red, green, blue);
+        return new LUT(red, green, blue);
+    }
+
+    private void blend(int from, int to, float t, byte[] red, byte[] green, byte[] blue) {
+        for (int i = 0; i < 256; i++) {
+            red[i] = (byte) Math.round((reds[from][i] & 0xff) * (1 - t) + (reds[to][i] & 0xff) * t);
+            green[i] = (byte) Math.round((greens[from][i] & 0xff) * (1 - t) + (greens[to][i] & 0xff) * t);
+            blue[i] = (byte) Math.round((blues[from][i] & 0xff) * (1 - t) + (blues[to][i] & 0xff) * t);
+        }
+    }
+
+    // Swaps the color model in place and keeps the display range the user or the contrast action set,
+    // the caller redraws so several effects can share one updateAndDraw()
+    public static void apply(ImagePlus imp, LUT lut) {
+        apply(imp, lut, false);
+    }
+
+    // Same, on every channel of a multi-channel image when allChannels is set, each keeping its own range
+    public static void apply(ImagePlus imp, LUT lut, boolean allChannels) {
+        if (imp.getType() == ImagePlus.COLOR_RGB) {
+            return; // RGB images have no LUT
+        }
+        if (imp.isComposite()) {
+            CompositeImage composite = (CompositeImage) imp;
+            int current = composite.getChannel();
+            for (int c = 1; c <= composite.getNChannels(); c++) {
+                if (!allChannels && c != current) {
+                    continue;
+                }
+                LUT channelLut = (LUT) lut.clone();
+                channelLut.min = composite.getChannelLut(c).min;
+                channelLut.max = composite.getChannelLut(c).max;
+                composite.setChannelLut(channelLut, c);
+            }
+        } else {
+            ImageProcessor ip = imp.getProcessor();
+            double min = ip.getMin();
+            double max = ip.getMax();
+            ip.setColorModel(lut);
+            ip.setMinAndMax(min, max);
+            if (imp.getStackSize() > 1) {
+                imp.getStack().setColorModel(lut);
+            }
+        }
+    }
+}
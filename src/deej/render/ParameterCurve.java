@@ -0,0 +1,131 @@
+/*
+ * DeeJ - An ImageJ plugin detects sound levels of mic or computer and triggers Fiji commands on the currently active window based on a defined threshold.
+ * 
+ * License: This software is provided under the GNU General Public License (GPL) version 3.
+ * Copyright (c) 2025 Hugo LE GUENNO
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package deej.render;
+
+/**
+ * Maps a level to an effect parameter through straight segments between control points, precomputed
+ * into a table with one entry per level unit so a lookup is two reads and a blend. Levels are the
+ * scaled band value the effects work with (100 = the bar at its height); below the first point the
+ * first value holds, above the last point the last value. Levels go from 0 to MAX_LEVEL, which
+ * bounds the table. Written as "level:value" pairs, for example "0:0, 99:0, 100:1, 1550:41".
+ */
+public final class ParameterCurve {
+
+    // Rotation step in degrees, following the old ladder of 1 to 8 degrees then 9 to 41 without its gaps
+    public static final ParameterCurve ROTATION = parse("0:0, 99:0, 100:1, 950:8.5, 1150:9.5, 1250:13, "
+            + "1350:19, 1450:28, 1550:41");
+    // Fraction of the display range kept, following the old ladder from 1 down to 0.3 without its gaps
+    public static final ParameterCurve CONTRAST = parse("0:1, 100:1, 125:0.95, 175:0.9, 300:0.85, 425:0.8, "
+            + "700:0.65, 1200:0.5, 2000:0.3");
+
+    // Highest control point level, far above any level the bar can show, keeps the table under 400 KB
+    public static final double MAX_LEVEL = 100_000;
+
+    private final double[] levels;
+    private final double[] values;
+    private final float[] table;
+    private final double first;
+
+    public ParameterCurve(double[] levels, double[] values) {
+        if (levels.length == 0 || levels.length != values.length) {
+            throw new IllegalArgumentException("A curve needs as many values as levels, at least one");
+        }
+        for (int i = 0; i < levels.length; i++) {
+            if (!(levels[i] >= 0 && levels[i] <= MAX_LEVEL)) {
+                throw new IllegalArgumentException("Curve levels must be between 0 and " + (long) MAX_LEVEL + ": "
+                        + levels[i]);
+            }
+            if (i > 0 && levels[i] <= levels[i - 1]) {
+                throw new IllegalArgumentException("Curve levels must increase: " + levels[i - 1] + ", " + levels[i]);
+            }
+        }
+        this.levels = levels.clone();
+        this.values = values.clone();
+        first = levels[0];
+        int size = (int) Math.ceil(levels[levels.length - 1] - first) + 1;
+        table = new float[size];
+        int segment = 0;
+        for (int i = 0; i < size; i++) {
+            double level = first + i;
+            while (segment + 1 < levels.length && levels[segment + 1] < level) {
+                segment++;
+            }
+            table[i] = (float) interpolate(segment, level);
+        }
+    }
+
+    private double interpolate(int segment, double level) {
+        if (segment + 1 >= levels.length || level <= levels[segment]) {
+            return values[Math.min(segment, levels.length - 1)];
+        }
+        double t = (level - levels[segment]) / (levels[segment + 1] - levels[segment]);
+        return values[segment] + (values[segment + 1] - values[segment]) * Math.min(1, t);
+    }
+
+    // Parses "level:value" pairs separated by commas, throws IllegalArgumentException with a readable message
+    public static ParameterCurve parse(String text) {
+        String[] pairs = text.trim().split("\\s*,\\s*");
+        double[] levels = new double[pairs.length];
+        double[] values = new double[pairs.length];
+        for (int i = 0; i < pairs.length; i++) {
+            String[] parts = pairs[i].split(":");
+            try {
+                if (parts.length != 2) {
+                    throw new NumberFormatException();
+                }
+                levels[i] = Double.parseDouble(parts[0].trim());
+                values[i] = Double.parseDouble(parts[1].trim());
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Expected level:value, got '" + pairs[i] + "'");
+            }
+        }
+        return new ParameterCurve(levels, values);
+    }
+
+    public double map(double level) {
+        double x = level - first;
+        if (!(x > 0)) {
+            return table[0];
+        }
+        int i = (int) x;
+        if (i >= table.length - 1) {
+            return table[table.length - 1];
+        }
+        double t = x - i;
+        return table[i] + (table[i + 1] - table[i]) * t;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < levels.length; i++) {
+            if (i > 0) {
+                text.append(", ");
+            }
+            text.append(format(levels[i])).append(':').append(format(values[i]));
+        }
+        return text.toString();
+    }
+
+    private static String format(double value) {
+        return value == Math.rint(value) ? String.valueOf((long) value) : Double.toString(value);
+    }
+}
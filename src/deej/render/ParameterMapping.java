@@ -0,0 +1,148 @@
+/*
+ * DeeJ - An ImageJ plugin detects sound levels of mic or computer and triggers Fiji commands on the currently active window based on a defined threshold.
+ * 
+ * License: This software is provided under the GNU General Public License (GPL) version 3.
+ * Copyright (c) 2025 Hugo LE GUENNO
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package deej.render;
+
+/**
+ * How a band level drives one effect parameter: a curve, attack and release times smoothing the
+ * curve's output, the attack while the level rises and the release while it falls whichever way the
+ * curve goes, and the change below which the effect is left as it is.
+ * Immutable and shared; each target follows it with its own Follower.
+ */
+public final class ParameterMapping {
+
+    public static final ParameterMapping ROTATION = new ParameterMapping(ParameterCurve.ROTATION, 20, 200, 0.5);
+    public static final ParameterMapping CONTRAST = new ParameterMapping(ParameterCurve.CONTRAST, 20, 200, 0.01);
+
+    private final ParameterCurve curve;
+    private final double attackMillis;
+    private final double releaseMillis;
+    private final double threshold;
+
+    // Times are the 63% rise and fall times in ms, 0 follows the curve at once
+    public ParameterMapping(ParameterCurve curve, double attackMillis, double releaseMillis, double threshold) {
+        this.curve = curve;
+        this.attackMillis = Math.max(0, attackMillis);
+        this.releaseMillis = Math.max(0, releaseMillis);
+        this.threshold = Math.max(0, threshold);
+    }
+
+    public ParameterCurve getCurve() {
+        return curve;
+    }
+
+    public double getAttackMillis() {
+        return attackMillis;
+    }
+
+    public double getReleaseMillis() {
+        return releaseMillis;
+    }
+
+    public double getThreshold() {
+        return threshold;
+    }
+
+    public ParameterMapping withCurve(ParameterCurve newCurve) {
+        return new ParameterMapping(newCurve, attackMillis, releaseMillis, threshold);
+    }
+
+    public ParameterMapping withTimes(double newAttackMillis, double newReleaseMillis) {
+        return new ParameterMapping(curve, newAttackMillis, newReleaseMillis, threshold);
+    }
+
+    public ParameterMapping withThreshold(double newThreshold) {
+        return new ParameterMapping(curve, attackMillis, releaseMillis, newThreshold);
+    }
+
+    public Follower newFollower() {
+        return new Follower(this);
+    }
+
+    /**
+     * Smoothed parameter of one target, not thread safe. The mapping is read at each update, so a
+     * follower picks up a new curve or new times without losing its state.
+     */
+    public static final class Follower {
+
+        private ParameterMapping mapping;
+        private double value;
+        // Last input level, and whether it last went up: the time constant follows the level, not the value
+        private double level;
+        private boolean rising = true;
+        private double applied = Double.NaN;
+        private long lastNanos;
+        private boolean started;
+
+        private Follower(ParameterMapping mapping) {
+            this.mapping = mapping;
+        }
+
+        public void setMapping(ParameterMapping mapping) {
+            this.mapping = mapping;
+        }
+
+        // Moves the value towards the curve at level, nanos is the time stamp of the level
+        public double update(double level, long nanos) {
+            double target = mapping.curve.map(level);
+            if (!started) {
+                value = target;
+                started = true;
+            } else {
+                double millis = Math.max(0, (nanos - lastNanos) / 1e6);
+                if (level != this.level) {
+                    rising = level > this.level;
+                }
+                double time = rising ? mapping.attackMillis : mapping.releaseMillis;
+                value = time <= 0 ? target : value + (target - value) * (1 - Math.exp(-millis / time));
+            }
+            this.level = level;
+            lastNanos = nanos;
+            return value;
+        }
+
+        // Forgets the value, the next update starts from the curve again
+        public void reset() {
+            started = false;
+            rising = true;
+            applied = Double.NaN;
+        }
+
+        public double getValue() {
+            return value;
+        }
+
+        // True when the value moved from the one last taken by at least the threshold
+        public boolean hasChanged() {
+            return Double.isNaN(applied) || Math.abs(value - applied) >= mapping.threshold;
+        }
+
+        // Marks the value as applied and returns it
+        public double take() {
+            applied = value;
+            return value;
+        }
+
+        // The threshold of the mapping, for effects accumulating the value themselves
+        public double getThreshold() {
+            return mapping.threshold;
+        }
+    }
+}
@@ -0,0 +1,214 @@
+/*
+ * DeeJ - An ImageJ plugin detects sound levels of mic or computer and triggers Fiji commands on the currently active window based on a defined threshold.
+ * 
+ * License: This software is provided under the GNU General Public License (GPL) version 3.
+ * Copyright (c) 2025 Hugo LE GUENNO
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package deej.render;
+
+import java.awt.Graphics;
+import java.awt.Image;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+
+import ij.IJ;
+import ij.ImagePlus;
+import ij.gui.ImageCanvas;
+import ij.gui.Overlay;
+import ij.gui.Roi;
+import ij.process.ImageProcessor;
+
+/**
+ * Live effects on a very large single-plane image at screen resolution. The pipeline applies its
+ * effects to a small hidden image holding the visible region at the pyramid level that matches
+ * the canvas magnification, and the result is drawn over the canvas as an overlay; the
+ * full-resolution pixels, display range and LUT stay untouched until commit() writes the current
+ * look into them. The region follows zoom and scroll, rotation turns around the centre of the view.
+ */
+public class ProxyView {
+
+    // Size of the view assumed when the image has no window, as in a macro or headless
+    private static final int HEADLESS_VIEW = 1024;
+
+    private final ImagePlus imp;
+    private final Object pixels;
+    private final ImagePyramid pyramid;
+    private ProxyRoi roi;
+    private ImagePlus proxy;
+    private Rectangle view;
+    private int level = -1;
+    // The proxy is mapped to RGB by the kernel into two images in turn, so the one the canvas was
+    // last handed is not written while it may still be painting it
+    private final IntensityKernel kernel = new IntensityKernel();
+    private final BufferedImage[] frames = new BufferedImage[2];
+    private int frameIndex;
+
+    // Builds the pyramid of imp's current plane, which takes a while on a large image
+    public ProxyView(ImagePlus imp) {
+        this.imp = imp;
+        pixels = imp.getProcessor().getPixels();
+        pyramid = new ImagePyramid(imp.getProcessor());
+    }
+
+    // Worth using for this image: one plane, no channels, above the given size
+    public static boolean isSuitable(ImagePlus imp, long minPixels) {
+        return minPixels > 0 && imp.getStackSize() == 1 && !imp.isComposite()
+                && (long) imp.getWidth() * imp.getHeight() >= minPixels;
+    }
+
+    // False once the image got other pixels, the pyramid would show the old ones
+    public boolean isCurrent(ImagePlus imp) {
+        return imp == this.imp && imp.getStackSize() == 1 && imp.getProcessor().getPixels() == pixels;
+    }
+
+    // The image effects are applied to, only valid until the next sync()
+    public ImagePlus getImage() {
+        return proxy;
+    }
+
+    public int getLevel() {
+        return level;
+    }
+
+    // Follows the canvas; returns true when the proxy was rebuilt for another region or level, and
+    // the caller must bind its renderers to the new getImage()
+    public boolean sync() {
+        ImageCanvas canvas = imp.getCanvas();
+        Rectangle region;
+        double magnification;
+        if (canvas != null) {
+            region = new Rectangle(canvas.getSrcRect());
+            magnification = canvas.getMagnification();
+        } else {
+            region = new Rectangle(0, 0, imp.getWidth(), imp.getHeight());
+            magnification = Math.min(1, HEADLESS_VIEW / (double) Math.max(imp.getWidth(), imp.getHeight()));
+        }
+        int newLevel = pyramid.levelFor(magnification);
+        if (proxy != null && newLevel == level && region.equals(view)) {
+            return false;
+        }
+        view = new Rectangle(region);
+        ImageProcessor ip = pyramid.crop(newLevel, region);
+        // The LUT carries over from the previous proxy, the range is the image's own (the contrast
+        // baseline), the caller applies its contrast again
+        ImageProcessor look = proxy != null ? proxy.getProcessor() : imp.getProcessor();
+        if (imp.getType() != ImagePlus.COLOR_RGB) {
+            ip.setColorModel(look.getColorModel());
+            ip.setMinAndMax(imp.getProcessor().getMin(), imp.getProcessor().getMax());
+        }
+        proxy = new ImagePlus(imp.getTitle() + " (proxy)", ip);
+        level = newLevel;
+        removeOverlay();
+        roi = new ProxyRoi(region);
+        return true;
+    }
+
+    // Draws the proxy over the canvas as it is now, without touching the full-resolution image
+    public void show() {
+        ImageProcessor ip = proxy.getProcessor();
+        BufferedImage frame = frames[frameIndex];
+        if (frame == null || frame.getWidth() != ip.getWidth() || frame.getHeight() != ip.getHeight()) {
+            frame = new BufferedImage(ip.getWidth(), ip.getHeight(), BufferedImage.TYPE_INT_RGB);
+            frames[frameIndex] = frame;
+        }
+        kernel.setDisplay(ip);
+        int[] rgb = ((DataBufferInt) frame.getRaster().getDataBuffer()).getData();
+        kernel.apply(ip, rgb);
+        frameIndex ^= 1;
+        roi.image = frame;
+        Overlay overlay = imp.getOverlay();
+        if (overlay == null) {
+            overlay = new Overlay();
+        }
+        if (!overlay.contains(roi)) {
+            overlay.add(roi);
+            imp.setOverlay(overlay);
+        }
+        imp.draw();
+    }
+
+    // Writes the proxy's look into the full-resolution image: the angle the proxy was rotated by,
+    // around the centre of the view as it was shown, then its display range and LUT. The rotation
+    // needs a copy of the whole plane; returns false, with the image and the overlay untouched, when
+    // the memory for it is not free. Otherwise the overlay is removed and the caller redraws
+    public boolean commit(double angle) {
+        if (angle != 0) {
+            ImageProcessor ip = imp.getProcessor();
+            long bytes = (long) ip.getWidth() * ip.getHeight() * (imp.getBitDepth() == 24 ? 4 : imp.getBitDepth() / 8);
+            if (bytes > IJ.maxMemory() - IJ.currentMemory()) {
+                IJ.log("DeeJ: not enough memory to rotate " + imp.getTitle() + " (" + (bytes >> 20)
+                        + " MB for a copy of the image), the proxy is kept");
+                return false;
+            }
+            RotationRenderer renderer = new RotationRenderer(ip);
+            if (view != null) {
+                renderer.setCenter(view.x + (view.width - 1) / 2.0, view.y + (view.height - 1) / 2.0);
+            }
+            renderer.setAngle(angle);
+            renderer.render();
+        }
+        removeOverlay();
+        if (proxy != null && imp.getType() != ImagePlus.COLOR_RGB) {
+            ImageProcessor look = proxy.getProcessor();
+            LutBank.apply(imp, look.getLut());
+            imp.setDisplayRange(look.getMin(), look.getMax());
+        }
+        return true;
+    }
+
+    // Drops the proxy and shows the full-resolution image as it was
+    public void close() {
+        removeOverlay();
+        imp.draw();
+    }
+
+    private void removeOverlay() {
+        Overlay overlay = imp.getOverlay();
+        if (roi != null && overlay != null && overlay.contains(roi)) {
+            overlay.remove(roi);
+            imp.setOverlay(overlay.size() > 0 ? overlay : null);
+        }
+    }
+
+    // Covers the proxy's region of the image with the proxy, scaled by the canvas
+    private class ProxyRoi extends Roi {
+
+        private static final long serialVersionUID = 1L;
+        private volatile Image image;
+
+        ProxyRoi(Rectangle region) {
+            super(region.x, region.y, region.width, region.height);
+            setName("DeeJ proxy");
+        }
+
+        @Override
+        public void draw(Graphics g) {
+            ImageCanvas canvas = imp.getCanvas();
+            Image current = image;
+            if (canvas == null || current == null) {
+                return;
+            }
+            Rectangle region = getBounds();
+            int x0 = canvas.screenX(region.x);
+            int y0 = canvas.screenY(region.y);
+            int x1 = canvas.screenX(region.x + region.width);
+            int y1 = canvas.screenY(region.y + region.height);
+            g.drawImage(current, x0, y0, x1, y1, 0, 0, current.getWidth(null), current.getHeight(null), null);
+        }
+    }
+}
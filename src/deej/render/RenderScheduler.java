@@ -0,0 +1,195 @@
+/*
+ * DeeJ - An ImageJ plugin detects sound levels of mic or computer and triggers Fiji commands on the currently active window based on a defined threshold.
+ * 
+ * License: This software is provided under the GNU General Public License (GPL) version 3.
+ * Copyright (c) 2025 Hugo LE GUENNO
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package deej.render;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import ij.IJ;
+import ij.ImagePlus;
+
+/**
+ * Decouples the audio rate from the display rate. The analysis stage only flags that a new state is
+ * available; a frame clock capped at the frame rate hands the latest state on once per frame, on its
+ * own daemon thread so it runs the same with or without a display. Redraws caused by the renderer
+ * are counted per image so the image listener can ignore its own updates.
+ */
+public class RenderScheduler {
+
+    // Called on the frame thread once per frame, returns true while it needs frames without new state (fades)
+    public interface FrameRenderer {
+        boolean renderFrame();
+    }
+
+    private final FrameRenderer renderer;
+    private final ScheduledExecutorService clock;
+    private ScheduledFuture<?> ticks;
+    private final AtomicBoolean dirty = new AtomicBoolean();
+    private final AtomicLong requests = new AtomicLong();
+    // Redraws notified to the image listeners but not seen by the plugin's listener yet, by image
+    private final Map<ImagePlus, AtomicInteger> ownUpdates = new ConcurrentHashMap<ImagePlus, AtomicInteger>();
+    private volatile int frameRate;
+    private volatile long periodNanos;
+    // Frame thread only
+    private long lastTick;
+    private boolean animating;
+
+    private volatile long frames;
+    private volatile long droppedStates;
+    private volatile long lateFrames;
+
+    public RenderScheduler(int frameRate, FrameRenderer renderer) {
+        this.renderer = renderer;
+        clock = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "DeeJ frames");
+            thread.setDaemon(true);
+            return thread;
+        });
+        setFrameRate(frameRate);
+    }
+
+    public synchronized void setFrameRate(int frameRate) {
+        this.frameRate = Math.max(1, frameRate);
+        periodNanos = 1_000_000_000L / this.frameRate;
+        if (ticks != null) {
+            ticks.cancel(false);
+            ticks = clock.scheduleAtFixedRate(this::tick, periodNanos, periodNanos, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    public int getFrameRate() {
+        return frameRate;
+    }
+
+    public synchronized void start() {
+        if (ticks != null) {
+            return;
+        }
+        frames = 0;
+        droppedStates = 0;
+        lateFrames = 0;
+        requests.set(0);
+        ownUpdates.clear();
+        // The frame thread starts over, lastTick and animating are reset on it
+        clock.execute(() -> {
+            lastTick = 0;
+            animating = false;
+        });
+        ticks = clock.scheduleAtFixedRate(this::tick, periodNanos, periodNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public synchronized void stop() {
+        if (ticks != null) {
+            ticks.cancel(false);
+            ticks = null;
+        }
+    }
+
+    // Stops the frame thread for good
+    public void close() {
+        stop();
+        clock.shutdown();
+    }
+
+    // Any thread: a newer state is available, earlier ones not rendered yet are superseded
+    public void requestFrame() {
+        requests.incrementAndGet();
+        dirty.set(true);
+    }
+
+    // Call right before the renderer redraws imp with updateAndDraw()
+    public void markOwnUpdate(ImagePlus imp) {
+        // ImageJ only notifies the listeners of an image with a window, a mark for any other would stay
+        if (imp.getWindow() != null) {
+            ownUpdates.computeIfAbsent(imp, key -> new AtomicInteger()).incrementAndGet();
+        }
+    }
+
+    // For the image listener: true, and consumed, when this notification for imp came from our own redraw
+    public boolean isOwnUpdate(ImagePlus imp) {
+        AtomicInteger pending = imp == null ? null : ownUpdates.get(imp);
+        if (pending == null) {
+            return false;
+        }
+        int count = pending.get();
+        while (count > 0) {
+            if (pending.compareAndSet(count, count - 1)) {
+                return true;
+            }
+            count = pending.get();
+        }
+        return false;
+    }
+
+    // Drops the marks of an image that went away
+    public void forget(ImagePlus imp) {
+        ownUpdates.remove(imp);
+    }
+
+    private void tick() {
+        long now = System.nanoTime();
+        // A tick arriving more than half a period after its slot means the previous frame ran long
+        if (lastTick != 0 && now - lastTick > periodNanos * 3 / 2) {
+            lateFrames++;
+        }
+        lastTick = now;
+        if (!dirty.getAndSet(false) && !animating) {
+            return;
+        }
+        long superseded = requests.getAndSet(0) - 1;
+        if (superseded > 0) {
+            droppedStates += superseded;
+        }
+        try {
+            animating = renderer.renderFrame();
+        } catch (RuntimeException e) {
+            // An exception would cancel the clock for good, the next frame tries again
+            animating = false;
+            IJ.log("DeeJ: frame failed: " + e);
+        }
+        frames++;
+    }
+
+    public long getFrames() {
+        return frames;
+    }
+
+    // Analysis states replaced by a newer one before they were drawn
+    public long getDroppedStates() {
+        return droppedStates;
+    }
+
+    public long getLateFrames() {
+        return lateFrames;
+    }
+
+    public String getSummary() {
+        return frames + " frames at up to " + frameRate + " Hz, " + droppedStates + " states coalesced, "
+                + lateFrames + " late frames";
+    }
+}
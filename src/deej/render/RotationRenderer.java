@@ -0,0 +1,307 @@
+/*
+ * DeeJ - An ImageJ plugin detects sound levels of mic or computer and triggers Fiji commands on the currently active window based on a defined threshold.
+ * 
+ * License: This software is provided under the GNU General Public License (GPL) version 3.
+ * Copyright (c) 2025 Hugo LE GUENNO
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package deej.render;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import ij.process.ImageProcessor;
+
+/**
+ * Rotation from the original pixels: keeps a copy of them and a cumulative angle, and redraws every
+ * frame from the copy with the inverse affine transform and bilinear interpolation. Rows are split
+ * across a fork-join pool. Since the original is never resampled twice, quality does not degrade and
+ * a full turn gives the original pixels back exactly. The rotated pixels are drawn into the target's
+ * own pixel array, so the copy is the only original left: call restore() before dropping a renderer.
+ */
+public class RotationRenderer {
+
+    // Below this many rows per task the split overhead outweighs the work
+    private static final int MIN_ROWS_PER_TASK = 32;
+
+    private final ImageProcessor target;
+    private final Object source;
+    private final Object output;
+    private final int width;
+    private final int height;
+    private final ForkJoinPool pool;
+    private double angle;
+    // Pivot in pixel coordinates, the centre of the image unless set
+    private double cx;
+    private double cy;
+
+    // target is drawn into in place; its current pixels become the original. A null pool renders
+    // on the calling thread, for callers that already spread whole frames over the cores
+    public RotationRenderer(ImageProcessor target, ForkJoinPool pool) {
+        if (target.getWidth() < 2 || target.getHeight() < 2) {
+            throw new IllegalArgumentException("Image too small to rotate");
+        }
+        this.target = target;
+        this.pool = pool;
+        width = target.getWidth();
+        height = target.getHeight();
+        output = target.getPixels();
+        source = target.getPixelsCopy();
+        cx = (width - 1) / 2.0;
+        cy = (height - 1) / 2.0;
+    }
+
+    public RotationRenderer(ImageProcessor target) {
+        this(target, ForkJoinPool.commonPool());
+    }
+
+    public ImageProcessor getTarget() {
+        return target;
+    }
+
+    // Cumulative angle in degrees, clockwise, 0 to 360
+    public double getAngle() {
+        return angle;
+    }
+
+    public void rotateBy(double degrees) {
+        setAngle(angle + degrees);
+    }
+
+    public void setAngle(double degrees) {
+        degrees %= 360;
+        angle = degrees < 0 ? degrees + 360 : degrees;
+    }
+
+    // Turns around (x, y) instead of the centre of the image, for a rotation seen on part of it
+    public void setCenter(double x, double y) {
+        cx = x;
+        cy = y;
+    }
+
+    // True while the target still holds pixels this renderer drew, false once the image was replaced
+    public boolean isCurrent(ImageProcessor ip) {
+        return ip == target && ip.getPixels() == output;
+    }
+
+    // Redraws the target from the original at the current angle
+    public void render() {
+        if (angle == 0) {
+            System.arraycopy(source, 0, output, 0, width * height);
+            return;
+        }
+        double radians = Math.toRadians(angle);
+        if (pool == null) {
+            renderRows(0, height, Math.cos(radians), Math.sin(radians));
+            return;
+        }
+        pool.invoke(new RowTask(0, height, Math.cos(radians), Math.sin(radians)));
+    }
+
+    // Puts the original pixels back into the array drawn into, even when the target has since been
+    // given another one (a stack moved to another slice), and resets the angle
+    public void restore() {
+        angle = 0;
+        render();
+    }
+
+    private class RowTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+        private final int y0;
+        private final int y1;
+        private final double cos;
+        private final double sin;
+
+        RowTask(int y0, int y1, double cos, double sin) {
+            this.y0 = y0;
+            this.y1 = y1;
+            this.cos = cos;
+            this.sin = sin;
+        }
+
+        @Override
+        protected void compute() {
+            if (y1 - y0 <= MIN_ROWS_PER_TASK) {
+                renderRows(y0, y1, cos, sin);
+                return;
+            }
+            int mid = (y0 + y1) >>> 1;
+            invokeAll(new RowTask(y0, mid, cos, sin), new RowTask(mid, y1, cos, sin));
+        }
+    }
+
+    private void renderRows(int y0, int y1, double cos, double sin) {
+        for (int y = y0; y < y1; y++) {
+            double dy = y - cy;
+            // Source position of the first pixel of the row, the row then steps by (cos, -sin)
+            double sx = -cos * cx + sin * dy + cx;
+            double sy = sin * cx + cos * dy + cy;
+            // Clip the row to the span whose source position lies inside the original
+            double start = 0;
+            double end = width - 1;
+            double[] span = {start, end};
+            clip(span, sx, cos, width - 1);
+            clip(span, sy, -sin, height - 1);
+            int x0 = (int) Math.ceil(span[0]);
+            int x1 = (int) Math.floor(span[1]) + 1;
+            int row = y * width;
+            if (x1 <= x0) {
+                clearRow(row, 0, width);
+                continue;
+            }
+            clearRow(row, 0, x0);
+            clearRow(row, x1, width);
+            if (source instanceof byte[]) {
+                rowByte(row, x0, x1, sx, sy, cos, sin);
+            } else if (source instanceof short[]) {
+                rowShort(row, x0, x1, sx, sy, cos, sin);
+            } else if (source instanceof float[]) {
+                rowFloat(row, x0, x1, sx, sy, cos, sin);
+            } else {
+                rowRgb(row, x0, x1, sx, sy, cos, sin);
+            }
+        }
+    }
+
+    // Narrows span to the x where 0 <= origin + step * x <= max
+    private static void clip(double[] span, double origin, double step, double max) {
+        if (Math.abs(step) < 1e-12) {
+            if (origin < 0 || origin > max) {
+                span[1] = span[0] - 1;
+            }
+            return;
+        }
+        double a = (0 - origin) / step;
+        double b = (max - origin) / step;
+        span[0] = Math.max(span[0], Math.min(a, b));
+        span[1] = Math.min(span[1], Math.max(a, b));
+    }
+
+    private void clearRow(int row, int from, int to) {
+        if (to <= from) {
+            return;
+        }
+        if (output instanceof byte[]) {
+            java.util.Arrays.fill((byte[]) output, row + from, row + to, (byte) 0);
+        } else if (output instanceof short[]) {
+            java.util.Arrays.fill((short[]) output, row + from, row + to, (short) 0);
+        } else if (output instanceof float[]) {
+            java.util.Arrays.fill((float[]) output, row + from, row + to, 0f);
+        } else {
+            java.util.Arrays.fill((int[]) output, row + from, row + to, 0);
+        }
+    }
+
+    // Each row method fills x0 to x1 from the 2x2 neighbourhood around (sx, sy), positions are clamped
+    // to guard against rounding at the edges of the clipped span
+
+    private void rowByte(int row, int from, int to, double sx, double sy, double cos, double sin) {
+        byte[] src = (byte[]) source;
+        byte[] dst = (byte[]) output;
+        int maxX = width - 2;
+        int maxY = height - 2;
+        double px = sx + cos * from;
+        double py = sy - sin * from;
+        for (int x = from; x < to; x++, px += cos, py -= sin) {
+            int x0 = (int) px;
+            int y0 = (int) py;
+            x0 = x0 < 0 ? 0 : x0 > maxX ? maxX : x0;
+            y0 = y0 < 0 ? 0 : y0 > maxY ? maxY : y0;
+            double fx = px - x0;
+            double fy = py - y0;
+            int i = y0 * width + x0;
+            double top = (src[i] & 0xff) + fx * ((src[i + 1] & 0xff) - (src[i] & 0xff));
+            double bottom = (src[i + width] & 0xff) + fx * ((src[i + width + 1] & 0xff) - (src[i + width] & 0xff));
+            dst[row + x] = (byte) (top + fy * (bottom - top) + 0.5);
+        }
+    }
+
+    private void rowShort(int row, int from, int to, double sx, double sy, double cos, double sin) {
+        short[] src = (short[]) source;
+        short[] dst = (short[]) output;
+        int maxX = width - 2;
+        int maxY = height - 2;
+        double px = sx + cos * from;
+        double py = sy - sin * from;
+        for (int x = from; x < to; x++, px += cos, py -= sin) {
+            int x0 = (int) px;
+            int y0 = (int) py;
+            x0 = x0 < 0 ? 0 : x0 > maxX ? maxX : x0;
+            y0 = y0 < 0 ? 0 : y0 > maxY ? maxY : y0;
+            double fx = px - x0;
+            double fy = py - y0;
+            int i = y0 * width + x0;
+            double top = (src[i] & 0xffff) + fx * ((src[i + 1] & 0xffff) - (src[i] & 0xffff));
+            double bottom = (src[i + width] & 0xffff) + fx * ((src[i + width + 1] & 0xffff) - (src[i + width] & 0xffff));
+            dst[row + x] = (short) (top + fy * (bottom - top) + 0.5);
+        }
+    }
+
+    private void rowFloat(int row, int from, int to, double sx, double sy, double cos, double sin) {
+        float[] src = (float[]) source;
+        float[] dst = (float[]) output;
+        int maxX = width - 2;
+        int maxY = height - 2;
+        double px = sx + cos * from;
+        double py = sy - sin * from;
+        for (int x = from; x < to; x++, px += cos, py -= sin) {
+            int x0 = (int) px;
+            int y0 = (int) py;
+            x0 = x0 < 0 ? 0 : x0 > maxX ? maxX : x0;
+            y0 = y0 < 0 ? 0 : y0 > maxY ? maxY : y0;
+            double fx = px - x0;
+            double fy = py - y0;
+            int i = y0 * width + x0;
+            double top = src[i] + fx * (src[i + 1] - src[i]);
+            double bottom = src[i + width] + fx * (src[i + width + 1] - src[i + width]);
+            dst[row + x] = (float) (top + fy * (bottom - top));
+        }
+    }
+
+    private void rowRgb(int row, int from, int to, double sx, double sy, double cos, double sin) {
+        int[] src = (int[]) source;
+        int[] dst = (int[]) output;
+        int maxX = width - 2;
+        int maxY = height - 2;
+        double px = sx + cos * from;
+        double py = sy - sin * from;
+        for (int x = from; x < to; x++, px += cos, py -= sin) {
+            int x0 = (int) px;
+            int y0 = (int) py;
+            x0 = x0 < 0 ? 0 : x0 > maxX ? maxX : x0;
+            y0 = y0 < 0 ? 0 : y0 > maxY ? maxY : y0;
+            double fx = px - x0;
+            double fy = py - y0;
+            int i = y0 * width + x0;
+            int a = src[i];
+            int b = src[i + 1];
+            int c = src[i + width];
+            int d = src[i + width + 1];
+            int rgb = 0;
+            for (int shift = 16; shift >= 0; shift -= 8) {
+                int ca = (a >> shift) & 0xff;
+                int cb = (b >> shift) & 0xff;
+                int cc = (c >> shift) & 0xff;
+                int cd = (d >> shift) & 0xff;
+                double top = ca + fx * (cb - ca);
+                double bottom = cc + fx * (cd - cc);
+                rgb |= ((int) (top + fy * (bottom - top) + 0.5)) << shift;
+            }
+            dst[row + x] = rgb;
+        }
+    }
+}
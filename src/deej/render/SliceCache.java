@@ -0,0 +1,238 @@
+/*
+ * DeeJ - An ImageJ plugin detects sound levels of mic or computer and triggers Fiji commands on the currently active window based on a defined threshold.
+ * 
+ * License: This software is provided under the GNU General Public License (GPL) version 3.
+ * Copyright (c) 2025 Hugo LE GUENNO
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package deej.render;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import ij.ImageStack;
+import ij.VirtualStack;
+import ij.process.ByteProcessor;
+import ij.process.ColorProcessor;
+import ij.process.FloatProcessor;
+import ij.process.ImageProcessor;
+import ij.process.ShortProcessor;
+
+/**
+ * Virtual stack in front of another virtual stack, keeping recently used slices decoded in memory
+ * up to a byte budget (least recently used first out) and loading predicted slices ahead of time on
+ * a background thread. Every read returns a fresh copy of the slice, as a disk-backed stack would,
+ * so effects drawing into the displayed plane never alter the cache. The wrapped stack is only
+ * read from one thread at a time, since not every virtual stack implementation is thread-safe.
+ */
+public class SliceCache extends VirtualStack {
+
+    // Predictions beyond this many pending loads push out the oldest ones, which are stale by then
+    private static final int PREFETCH_QUEUE = 16;
+
+    private final ImageStack source;
+    private final long maxBytes;
+    private final long sliceBytes;
+    // Access ordered, guarded by itself
+    private final LinkedHashMap<Integer, Object> slices = new LinkedHashMap<Integer, Object>(16, 0.75f, true);
+    // Slices being loaded, a reader waits for the load instead of starting a second one
+    private final Map<Integer, CountDownLatch> loading = new HashMap<Integer, CountDownLatch>();
+    private final Object sourceLock = new Object();
+    private final ThreadPoolExecutor prefetcher;
+
+    private long hits;
+    private long misses;
+    private long waits;
+    private long prefetched;
+    private long loads;
+    private long loadNanos;
+    private long maxLoadNanos;
+
+    public SliceCache(ImageStack source, long maxBytes) {
+        super(source.getWidth(), source.getHeight(), source.getColorModel(), null);
+        this.source = source;
+        this.maxBytes = maxBytes;
+        setBitDepth(source.getBitDepth());
+        // RGB planes are int arrays, 4 bytes per pixel rather than 24 bits
+        int bitDepth = source.getBitDepth();
+        sliceBytes = (long) source.getWidth() * source.getHeight() * (bitDepth == 24 ? 4 : Math.max(1, bitDepth / 8));
+        prefetcher = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<Runnable>(PREFETCH_QUEUE), r -> {
+                    Thread thread = new Thread(r, "DeeJ slice prefetch");
+                    thread.setDaemon(true);
+                    return thread;
+                }, new ThreadPoolExecutor.DiscardOldestPolicy());
+    }
+
+    public ImageStack getSource() {
+        return source;
+    }
+
+    // n is 1 based, as in ImageStack
+    @Override
+    public ImageProcessor getProcessor(int n) {
+        Object pixels = get(n);
+        int width = getWidth();
+        int height = getHeight();
+        if (pixels instanceof byte[]) {
+            return new ByteProcessor(width, height, ((byte[]) pixels).clone(), getColorModel());
+        } else if (pixels instanceof short[]) {
+            return new ShortProcessor(width, height, ((short[]) pixels).clone(), getColorModel());
+        } else if (pixels instanceof float[]) {
+            return new FloatProcessor(width, height, ((float[]) pixels).clone(), getColorModel());
+        }
+        return new ColorProcessor(width, height, ((int[]) pixels).clone());
+    }
+
+    private Object get(int n) {
+        CountDownLatch pending;
+        CountDownLatch done = null;
+        synchronized (slices) {
+            Object pixels = slices.get(n);
+            if (pixels != null) {
+                hits++;
+                return pixels;
+            }
+            pending = loading.get(n);
+            if (pending != null) {
+                waits++;
+            } else {
+                misses++;
+                done = new CountDownLatch(1);
+                loading.put(n, done);
+            }
+        }
+        if (done != null) {
+            return load(n, done);
+        }
+        try {
+            pending.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (slices) {
+            Object pixels = slices.get(n);
+            if (pixels != null) {
+                return pixels;
+            }
+        }
+        // The prefetch failed or the slice was evicted at once, read it here
+        synchronized (sourceLock) {
+            return source.getProcessor(n).getPixels();
+        }
+    }
+
+    // Loads slice n from the wrapped stack and caches it, evicting the least recently used slices;
+    // the caller registered done in loading
+    private Object load(int n, CountDownLatch done) {
+        try {
+            long start = System.nanoTime();
+            Object pixels;
+            synchronized (sourceLock) {
+                pixels = source.getProcessor(n).getPixels();
+            }
+            long elapsed = System.nanoTime() - start;
+            synchronized (slices) {
+                loads++;
+                loadNanos += elapsed;
+                maxLoadNanos = Math.max(maxLoadNanos, elapsed);
+                slices.put(n, pixels);
+                Iterator<Integer> eldest = slices.keySet().iterator();
+                while (slices.size() > 1 && slices.size() * sliceBytes > maxBytes && eldest.hasNext()) {
+                    eldest.next();
+                    eldest.remove();
+                }
+            }
+            return pixels;
+        } finally {
+            synchronized (slices) {
+                loading.remove(n);
+            }
+            done.countDown();
+        }
+    }
+
+    // Queues slices, 1 based, for loading in the background; already cached or loading ones are skipped
+    public void prefetch(int... indexes) {
+        for (int n : indexes) {
+            if (n < 1 || n > getSize()) {
+                continue;
+            }
+            synchronized (slices) {
+                if (slices.containsKey(n) || loading.containsKey(n)) {
+                    continue;
+                }
+            }
+            prefetcher.execute(() -> {
+                CountDownLatch done = new CountDownLatch(1);
+                synchronized (slices) {
+                    if (slices.containsKey(n) || loading.containsKey(n)) {
+                        return;
+                    }
+                    loading.put(n, done);
+                    prefetched++;
+                }
+                load(n, done);
+            });
+        }
+    }
+
+    public boolean isCached(int n) {
+        synchronized (slices) {
+            return slices.containsKey(n);
+        }
+    }
+
+    @Override
+    public int getSize() {
+        return source.getSize();
+    }
+
+    @Override
+    public String getSliceLabel(int n) {
+        return source.getSliceLabel(n);
+    }
+
+    @Override
+    public void setPixels(Object pixels, int n) {
+    }
+
+    // Stops the prefetch thread and drops every cached slice
+    public void close() {
+        prefetcher.shutdownNow();
+        synchronized (slices) {
+            slices.clear();
+        }
+    }
+
+    public String getSummary() {
+        synchronized (slices) {
+            long reads = hits + misses + waits;
+            return hits + " hits, " + waits + " waits on prefetch, " + misses + " misses"
+                    + (reads > 0 ? " (" + (100 * hits / reads) + "% hit rate)" : "") + ", " + prefetched
+                    + " prefetched, " + loads + " loads averaging "
+                    + (loads > 0 ? String.format("%.1f", loadNanos / 1e6 / loads) : "0") + " ms (max "
+                    + String.format("%.1f", maxLoadNanos / 1e6) + " ms), " + slices.size() + " slices ("
+                    + (slices.size() * sliceBytes >> 20) + " MB) cached";
+        }
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * DeeJ - An ImageJ plugin detects sound levels of mic or computer and triggers Fiji commands on the currently active window based on a defined threshold.
+ * 
+ * License: This software is provided under the GNU General Public License (GPL) version 3.
+ * Copyright (c) 2025 Hugo LE GUENNO
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package deej.render;
+
+import ij.CompositeImage;
+import ij.ImagePlus;
+import ij.process.LUT;
+
+/**
+ * Contrast action working on the display range only, so 8, 16 and 32-bit data are shown with more
+ * contrast without converting or touching a single pixel. The range the image had when it was bound
+ * is the baseline; a factor of 1 gives it back. Multi-channel images keep one baseline per channel,
+ * and the factor applies to the current channel or to all of them. Nothing here redraws the image.
+ */
+public class StackContrast {
+
+    private final ImagePlus imp;
+    private final double[] baseMin;
+    private final double[] baseMax;
+
+    public StackContrast(ImagePlus imp) {
+        this.imp = imp;
+        int channels = imp.isComposite() ? imp.getNChannels() : 1;
+        baseMin = new double[channels];
+        baseMax = new double[channels];
+        if (imp.isComposite()) {
+            CompositeImage composite = (CompositeImage) imp;
+            for (int c = 0; c < channels; c++) {
+                LUT lut = composite.getChannelLut(c + 1);
+                baseMin[c] = lut.min;
+                baseMax[c] = lut.max;
+            }
+        } else {
+            baseMin[0] = imp.getDisplayRangeMin();
+            baseMax[0] = imp.getDisplayRangeMax();
+        }
+    }
+
+    // False once the plugin moved to another image or the channels changed under it
+    public boolean isCurrent(ImagePlus imp) {
+        return imp == this.imp && (imp.isComposite() ? imp.getNChannels() : 1) == baseMin.length;
+    }
+
+    // Keeps factor of the baseline range above its minimum, returns false for RGB images which have no range
+    public boolean apply(double factor, boolean allChannels) {
+        if (imp.getType() == ImagePlus.COLOR_RGB) {
+            return false;
+        }
+        if (!imp.isComposite()) {
+            imp.getProcessor().setMinAndMax(baseMin[0], baseMin[0] + (baseMax[0] - baseMin[0]) * factor);
+            return true;
+        }
+        CompositeImage composite = (CompositeImage) imp;
+        int current = composite.getChannel();
+        for (int c = 1; c <= baseMin.length; c++) {
+            if (!allChannels && c != current) {
+                continue;
+            }
+            double min = baseMin[c - 1];
+            double max = min + (baseMax[c - 1] - min) * factor;
+            if (c == current) {
+                composite.setDisplayRange(min, max);
+            } else {
+                LUT lut = (LUT) composite.getChannelLut(c).clone();
+                lut.min = min;
+                lut.max = max;
+                composite.setChannelLut(lut, c);
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,157 @@
+/*
+ * DeeJ - An ImageJ plugin detects sound levels of mic or computer and triggers Fiji commands on the currently active window based on a defined threshold.
+ * 
+ * License: This software is provided under the GNU General Public License (GPL) version 3.
+ * Copyright (c) 2025 Hugo LE GUENNO
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package deej.render;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import ij.ImagePlus;
+import ij.ImageStack;
+
+/**
+ * Rotation of the displayed plane or of every plane of a stack or hyperstack (all slices, channels
+ * and frames) at one shared angle, always redrawn from the original pixels. Each plane has its own
+ * RotationRenderer and the planes are drawn in parallel on a fork-join pool; a single plane splits
+ * its rows instead. The rotated pixels are stored in place in the stack's own arrays and the copies
+ * kept here are the only originals, so restore() must run before a renderer is dropped or replaced,
+ * for example when the whole-stack mode or the stack changes. The whole-stack mode keeps a copy of
+ * every plane, so it needs the stack's size in free memory. Virtual stacks hold no planes in memory
+ * and always rotate the displayed plane only.
+ */
+public class StackRotationRenderer {
+
+    private final ImagePlus imp;
+    private final ImageStack stack;
+    private final RotationRenderer[] planes;
+    private final ForkJoinPool pool;
+    private double angle;
+
+    public StackRotationRenderer(ImagePlus imp, boolean wholeStack, ForkJoinPool pool) {
+        this.imp = imp;
+        this.pool = pool;
+        ImageStack imageStack = imp.getStack();
+        if (wholeStack && imp.getStackSize() > 1 && !imageStack.isVirtual()) {
+            stack = imageStack;
+            planes = new RotationRenderer[stack.getSize()];
+            // With at least as many planes as threads each plane renders on one thread
+            boolean rowsInParallel = planes.length < pool.getParallelism();
+            for (int i = 0; i < planes.length; i++) {
+                planes[i] = new RotationRenderer(stack.getProcessor(i + 1), rowsInParallel ? pool : null);
+            }
+        } else {
+            stack = null;
+            planes = new RotationRenderer[] {new RotationRenderer(imp.getProcessor(), pool)};
+        }
+    }
+
+    public StackRotationRenderer(ImagePlus imp, boolean wholeStack) {
+        this(imp, wholeStack, ForkJoinPool.commonPool());
+    }
+
+    public ImagePlus getImage() {
+        return imp;
+    }
+
+    public boolean isWholeStack() {
+        return stack != null;
+    }
+
+    public int getPlaneCount() {
+        return planes.length;
+    }
+
+    // True while every plane still holds the pixels this renderer drew, false once the image,
+    // the displayed slice (single plane mode) or the stack itself was replaced
+    public boolean isCurrent(ImagePlus imp) {
+        if (imp != this.imp) {
+            return false;
+        }
+        if (stack == null) {
+            return planes[0].isCurrent(imp.getProcessor());
+        }
+        if (imp.getStack() != stack || stack.getSize() != planes.length) {
+            return false;
+        }
+        for (int i = 0; i < planes.length; i++) {
+            if (stack.getPixels(i + 1) != planes[i].getTarget().getPixels()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Cumulative angle in degrees, clockwise, 0 to 360
+    public double getAngle() {
+        return angle;
+    }
+
+    public void rotateBy(double degrees) {
+        setAngle(angle + degrees);
+    }
+
+    public void setAngle(double degrees) {
+        degrees %= 360;
+        angle = degrees < 0 ? degrees + 360 : degrees;
+        for (RotationRenderer plane : planes) {
+            plane.setAngle(angle);
+        }
+    }
+
+    // Redraws every plane from its original at the current angle
+    public void render() {
+        if (planes.length == 1 || planes.length < pool.getParallelism()) {
+            for (RotationRenderer plane : planes) {
+                plane.render();
+            }
+            return;
+        }
+        pool.invoke(new PlaneTask(0, planes.length));
+    }
+
+    // Puts the original pixels back in every plane drawn into, even planes the stack has since
+    // replaced or a slice no longer displayed, and resets the angle
+    public void restore() {
+        setAngle(0);
+        render();
+    }
+
+    private class PlaneTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+        private final int from;
+        private final int to;
+
+        PlaneTask(int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from == 1) {
+                planes[from].render();
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new PlaneTask(from, mid), new PlaneTask(mid, to));
+        }
+    }
+}
@@ -0,0 +1,161 @@
+/*
+ * DeeJ - An ImageJ plugin detects sound levels of mic or computer and triggers Fiji commands on the currently active window based on a defined threshold.
+ * 
+ * License: This software is provided under the GNU General Public License (GPL) version 3.
+ * Copyright (c) 2025 Hugo LE GUENNO
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package deej.render;
+
+import ij.CompositeImage;
+import ij.IJ;
+import ij.ImagePlus;
+import ij.ImageStack;
+
+/**
+ * Scrub action: moves the Z or T position of an image to follow the audio. Virtual stacks get a
+ * SliceCache in front of them for as long as the scrubber is bound, and every move prefetches the
+ * positions the audio is likely to reach next, ahead in the direction of travel and a few behind.
+ * In-memory stacks are moved directly. Positions are 1 based; everything runs on the owning pipeline's thread except
+ * the prefetch itself.
+ */
+public class StackScrubber {
+
+    public enum Axis { Z, T }
+
+    private final ImagePlus imp;
+    private final Axis axis;
+    private final int length;
+    private final int prefetch;
+    private final SliceCache cache;
+    private int position;
+    private int direction = 1;
+
+    // cacheBytes and prefetch only matter for virtual stacks, prefetch is the number of positions read ahead
+    public StackScrubber(ImagePlus imp, Axis axis, long cacheBytes, int prefetch) {
+        this.imp = imp;
+        this.prefetch = Math.max(0, prefetch);
+        // An axis the image does not have falls back to the other one
+        Axis used = axis;
+        if (used == Axis.T && imp.getNFrames() == 1) {
+            used = Axis.Z;
+        } else if (used == Axis.Z && imp.getNSlices() == 1 && imp.getNFrames() > 1) {
+            used = Axis.T;
+        }
+        this.axis = used;
+        length = used == Axis.T ? imp.getNFrames() : imp.getNSlices();
+        position = used == Axis.T ? imp.getFrame() : imp.getSlice();
+        ImageStack stack = imp.getStack();
+        if (stack.isVirtual() && length > 1) {
+            cache = new SliceCache(stack, cacheBytes);
+            boolean hyperStack = imp.isHyperStack();
+            imp.setStack(cache, imp.getNChannels(), imp.getNSlices(), imp.getNFrames());
+            imp.setOpenAsHyperStack(hyperStack);
+        } else {
+            cache = null;
+        }
+    }
+
+    public boolean isCurrent(ImagePlus imp) {
+        return imp == this.imp && (cache == null || imp.getStack() == cache);
+    }
+
+    public Axis getAxis() {
+        return axis;
+    }
+
+    // Number of positions along the axis
+    public int getLength() {
+        return length;
+    }
+
+    public int getPosition() {
+        return position;
+    }
+
+    // Position for a fraction from 0 (first) to 1 (last)
+    public int positionOf(double fraction) {
+        fraction = Math.max(0, Math.min(1, fraction));
+        return 1 + (int) Math.round(fraction * (length - 1));
+    }
+
+    // Moves by delta positions, wrapping around at both ends
+    public boolean step(int delta) {
+        return moveTo(Math.floorMod(position - 1 + delta, length) + 1);
+    }
+
+    // Shows position, returns false when the image was already there
+    public boolean moveTo(int target) {
+        target = Math.max(1, Math.min(length, target));
+        if (target == position || length < 2) {
+            return false;
+        }
+        direction = target > position ? 1 : -1;
+        position = target;
+        if (axis == Axis.T) {
+            imp.setPosition(imp.getChannel(), imp.getSlice(), target);
+        } else {
+            imp.setPosition(imp.getChannel(), target, imp.getFrame());
+        }
+        prefetchAround();
+        return true;
+    }
+
+    // Queues the next positions in the direction of travel, then half as many the other way; a composite
+    // shown in composite mode needs every channel of a position
+    private void prefetchAround() {
+        if (cache == null || prefetch == 0) {
+            return;
+        }
+        boolean allChannels = imp.isComposite() && ((CompositeImage) imp).getMode() == IJ.COMPOSITE;
+        int firstChannel = allChannels ? 1 : imp.getChannel();
+        int lastChannel = allChannels ? imp.getNChannels() : imp.getChannel();
+        int behind = prefetch / 2;
+        int[] indexes = new int[(prefetch + behind) * (lastChannel - firstChannel + 1)];
+        int count = 0;
+        for (int i = 1; i <= prefetch + behind; i++) {
+            int offset = i <= prefetch ? direction * i : -direction * (i - prefetch);
+            int target = Math.floorMod(position - 1 + offset, length) + 1;
+            for (int c = firstChannel; c <= lastChannel; c++) {
+                indexes[count++] = axis == Axis.T ? imp.getStackIndex(c, imp.getSlice(), target)
+                        : imp.getStackIndex(c, target, imp.getFrame());
+            }
+        }
+        cache.prefetch(indexes);
+    }
+
+    // True while the displayed slice is a fresh copy from the cache rather than pixels kept in memory
+    public boolean isCached() {
+        return cache != null;
+    }
+
+    // Puts the original stack back and frees the cache
+    public void close() {
+        if (cache != null) {
+            if (imp.getStack() == cache) {
+                boolean hyperStack = imp.isHyperStack();
+                imp.setStack(cache.getSource(), imp.getNChannels(), imp.getNSlices(), imp.getNFrames());
+                imp.setOpenAsHyperStack(hyperStack);
+            }
+            cache.close();
+        }
+    }
+
+    public String getSummary() {
+        return (axis == Axis.T ? "T " : "Z ") + position + "/" + length
+                + (cache != null ? ", cache: " + cache.getSummary() : ", in memory");
+    }
+}
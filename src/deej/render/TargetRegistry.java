@@ -0,0 +1,176 @@
+/*
+ * DeeJ - An ImageJ plugin detects sound levels of mic or computer and triggers Fiji commands on the currently active window based on a defined threshold.
+ * 
+ * License: This software is provided under the GNU General Public License (GPL) version 3.
+ * Copyright (c) 2025 Hugo LE GUENNO
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package deej.render;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+import ij.IJ;
+import ij.ImagePlus;
+import ij.Prefs;
+
+import deej.metrics.LatencyMetrics;
+
+/**
+ * The images DeeJ drives, each with its own effect pipeline. Every frame state from the analysis is
+ * handed to all pipelines, which apply it on a small shared pool; each pipeline has at most one run
+ * queued, so the queue stays bounded by the number of targets. Images can be added and removed from
+ * any thread while the capture runs.
+ */
+public class TargetRegistry {
+
+    private final Map<ImagePlus, EffectPipeline> pipelines = new ConcurrentHashMap<ImagePlus, EffectPipeline>();
+    private final Supplier<EffectSettings> settings;
+    private final LutBank lutBank;
+    private final LatencyMetrics latency;
+    private final Consumer<ImagePlus> beforeDraw;
+    private final ThreadPoolExecutor pool;
+
+    // settings gives the current snapshot, read by each pipeline once per state
+    public TargetRegistry(Supplier<EffectSettings> settings, LutBank lutBank, LatencyMetrics latency,
+            Consumer<ImagePlus> beforeDraw) {
+        this.settings = settings;
+        this.lutBank = lutBank;
+        this.latency = latency;
+        this.beforeDraw = beforeDraw;
+        // At least two so one slow image cannot hold every other target back on a single core machine
+        int threads = Math.max(2, Math.min(4, Prefs.getThreads()));
+        pool = new ThreadPoolExecutor(threads, threads, 30, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+                r -> {
+                    Thread thread = new Thread(r, "DeeJ effects");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        pool.allowCoreThreadTimeOut(true);
+    }
+
+    // The pipeline of imp, or null when DeeJ does not drive it
+    public EffectPipeline get(ImagePlus imp) {
+        return imp == null ? null : pipelines.get(imp);
+    }
+
+    // The lock states are drawn on imp under, or null when DeeJ does not drive it
+    public Object getLock(ImagePlus imp) {
+        EffectPipeline pipeline = get(imp);
+        return pipeline != null ? pipeline.getImageLock() : null;
+    }
+
+    // The pipeline of imp, created with every action off on first use
+    public EffectPipeline add(ImagePlus imp) {
+        return pipelines.computeIfAbsent(imp,
+                key -> new EffectPipeline(key, settings, lutBank, latency, beforeDraw, pool));
+    }
+
+    // Stops driving imp, a state being applied to it finishes first
+    public void remove(ImagePlus imp) {
+        EffectPipeline pipeline = imp == null ? null : pipelines.remove(imp);
+        if (pipeline != null) {
+            pipeline.close();
+        }
+    }
+
+    // Hands the state to every pipeline with an action on
+    public void update(FrameState state) {
+        for (EffectPipeline pipeline : pipelines.values()) {
+            if (pipeline.isActive() || pipeline.isFading()) {
+                pipeline.submit(state);
+            }
+        }
+    }
+
+    // Applies the state to every pipeline with an action on and waits until all have drawn it, so no
+    // state is coalesced; for replays run as fast as possible
+    public void apply(FrameState state) throws InterruptedException {
+        List<Future<?>> runs = new ArrayList<Future<?>>();
+        for (EffectPipeline pipeline : pipelines.values()) {
+            if (pipeline.isActive() || pipeline.isFading()) {
+                runs.add(pool.submit(() -> pipeline.applyNow(state)));
+            }
+        }
+        for (Future<?> run : runs) {
+            try {
+                run.get();
+            } catch (ExecutionException e) {
+                IJ.log("DeeJ: effects failed: " + e.getCause());
+            }
+        }
+    }
+
+    // True while some target is still fading and needs frames without new audio
+    public boolean isAnimating() {
+        for (EffectPipeline pipeline : pipelines.values()) {
+            if (pipeline.isFading()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Writes what the proxy of imp shows into its full-resolution pixels, on the effect pool
+    public void commit(ImagePlus imp) {
+        EffectPipeline pipeline = get(imp);
+        if (pipeline != null) {
+            pipeline.commit();
+        }
+    }
+
+    // Starts every pipeline's random LUT choice and smoothing over, for a new capture or replay
+    public void restart() {
+        for (EffectPipeline pipeline : pipelines.values()) {
+            pipeline.restart();
+        }
+    }
+
+    // Rebuilds every pipeline's renderers on its next state, after a settings change
+    public void reset() {
+        for (EffectPipeline pipeline : pipelines.values()) {
+            pipeline.reset();
+        }
+    }
+
+    public int size() {
+        return pipelines.size();
+    }
+
+    public String getSummary() {
+        List<String> lines = new ArrayList<String>();
+        for (EffectPipeline pipeline : pipelines.values()) {
+            lines.add(pipeline.getSummary());
+        }
+        return lines.isEmpty() ? "no targets" : String.join("\n", lines);
+    }
+
+    public void close() {
+        for (ImagePlus imp : new ArrayList<ImagePlus>(pipelines.keySet())) {
+            remove(imp);
+        }
+        pool.shutdown();
+    }
+}
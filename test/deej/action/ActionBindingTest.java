@@ -0,0 +1,114 @@
+/*
+ * DeeJ - An ImageJ plugin detects sound levels of mic or computer and triggers Fiji commands on the currently active window based on a defined threshold.
+ * 
+ * License: This software is provided under the GNU General Public License (GPL) version 3.
+ * Copyright (c) 2025 Hugo LE GUENNO
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package deej.action;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+import deej.analysis.Band;
+import deej.render.FrameState;
+
+public class ActionBindingTest {
+
+    private static FrameState state(Band band, int level, long onsets, long beats) {
+        int[] levels = new int[Band.values().length];
+        levels[band.ordinal()] = level;
+        return new FrameState(levels, onsets, beats, 0, 0);
+    }
+
+    @Test
+    public void levelTriggerFiresOnTheWayUpThroughTheThreshold() {
+        ActionBinding binding = ActionBinding.parse("bass level>600 | Invert | ");
+        assertFalse(binding.fires(state(Band.BASS, 500, 0, 0)));
+        assertTrue(binding.fires(state(Band.BASS, 601, 0, 0)));
+        assertFalse(binding.fires(state(Band.BASS, 900, 0, 0)));
+        // Another band going up does not count
+        assertFalse(binding.fires(state(Band.MID, 900, 0, 0)));
+        assertTrue(binding.fires(state(Band.BASS, 700, 0, 0)));
+    }
+
+    @Test
+    public void onsetTriggerCountsFromTheFirstState() {
+        ActionBinding binding = ActionBinding.parse("Flux onset | macro | run(\"Invert\");");
+        assertFalse(binding.fires(state(Band.FLUX, 0, 5, 0)));
+        assertFalse(binding.fires(state(Band.FLUX, 0, 5, 0)));
+        assertTrue(binding.fires(state(Band.FLUX, 0, 6, 0)));
+    }
+
+    @Test
+    public void defaultsToTheOverallThresholdAndLatest() {
+        ActionBinding binding = ActionBinding.parse("level level | Invert");
+        assertFalse(binding.fires(state(Band.LEVEL, 700, 0, 0)));
+        assertTrue(binding.fires(state(Band.LEVEL, 701, 0, 0)));
+        // latest keeps one waiting run, a second offer while it waits replaces it and counts as dropped
+        assertEquals(0, binding.offer(null, state(Band.LEVEL, 0, 0, 0), 1));
+        assertEquals(-1, binding.offer(null, state(Band.LEVEL, 0, 0, 0), 2));
+        assertTrue(binding.getSummary(), binding.getSummary().contains("1 dropped, 1 waiting"));
+    }
+
+    @Test
+    public void queueKeepsUpToItsCapacity() {
+        ActionBinding binding = ActionBinding.parse("treble beat every=250ms queue=2 | Invert");
+        for (int i = 0; i < 4; i++) {
+            binding.offer(null, state(Band.TREBLE, 0, 0, 0), i);
+        }
+        assertTrue(binding.getSummary(), binding.getSummary().contains("2 dropped, 2 waiting"));
+    }
+
+    @Test
+    public void dropSkipsFiringsWhileBusy() {
+        ActionBinding binding = ActionBinding.parse("mid onset drop | Invert");
+        assertEquals(0, binding.offer(null, state(Band.MID, 0, 0, 0), 1));
+        assertEquals(-1, binding.offer(null, state(Band.MID, 0, 0, 0), 2));
+        assertTrue(binding.getSummary(), binding.getSummary().contains("1 dropped, 1 waiting"));
+    }
+
+    @Test
+    public void rejectsMalformedLines() {
+        String[] lines = {
+            "bass level>600",
+            "bass | Invert",
+            "drums onset | Invert",
+            "bass clap | Invert",
+            "bass level>loud | Invert",
+            "bass onset every=soon | Invert",
+            "bass onset sometimes | Invert",
+            "bass onset |  | x",
+        };
+        for (String line : lines) {
+            try {
+                ActionBinding.parse(line);
+                fail("Accepted '" + line + "'");
+            } catch (IllegalArgumentException e) {
+                assertTrue(e.getMessage(), e.getMessage().endsWith(line));
+            }
+        }
+    }
+
+    @Test
+    public void parsesABindingList() {
+        assertEquals(2, ActionDispatcher.parse("# effects\nbass onset | Invert\n\n  \nmid beat | macro | x\n").size());
+    }
+}
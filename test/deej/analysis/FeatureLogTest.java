@@ -0,0 +1,118 @@
+/*
+ * DeeJ - An ImageJ plugin detects sound levels of mic or computer and triggers Fiji commands on the currently active window based on a defined threshold.
+ * 
+ * License: This software is provided under the GNU General Public License (GPL) version 3.
+ * Copyright (c) 2025 Hugo LE GUENNO
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package deej.analysis;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class FeatureLogTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static float[] record(int i) {
+        float[] record = new float[Features.WIDTH];
+        for (int f = 0; f < record.length; f++) {
+            record[f] = i * 100 + f + 0.5f;
+        }
+        return record;
+    }
+
+    private File write(int records) throws IOException {
+        File file = folder.newFile("session.deej");
+        try (FeatureRecorder recorder = new FeatureRecorder(file, Features.WIDTH, 48000, 2048, 512)) {
+            for (int i = 0; i < records; i++) {
+                recorder.append(1_000_000_000L + i * 10_000_000L, i % 3 != 0, record(i));
+            }
+            assertEquals(records, recorder.getRecordCount());
+        }
+        return file;
+    }
+
+    @Test
+    public void replaysWhatWasRecorded() throws IOException {
+        File file = write(1000);
+        try (FeatureReplay replay = new FeatureReplay(file)) {
+            assertEquals(1000, replay.getRecordCount());
+            assertEquals(Features.WIDTH, replay.getWidth());
+            assertEquals(48000, replay.getSampleRate(), 0);
+            assertEquals(2048, replay.getFftSize());
+            assertEquals(512, replay.getHopSize());
+            float[] record = new float[Features.WIDTH];
+            for (int i = 0; i < 1000; i++) {
+                assertTrue(replay.next(record));
+                assertArrayEquals(record(i), record, 0);
+                assertEquals(i * 10_000_000L, replay.getTimestamp());
+                assertEquals(i % 3 != 0, replay.isActive());
+            }
+            assertFalse(replay.next(record));
+            replay.rewind();
+            assertTrue(replay.next(record));
+            assertArrayEquals(record(0), record, 0);
+        }
+    }
+
+    @Test
+    public void narrowerRecordsLeaveTheRestAlone() throws IOException {
+        File file = write(1);
+        try (FeatureReplay replay = new FeatureReplay(file)) {
+            float[] record = new float[3];
+            assertTrue(replay.next(record));
+            assertArrayEquals(new float[] {0.5f, 1.5f, 2.5f}, record, 0);
+        }
+    }
+
+    @Test
+    public void aLogCutShortReplaysItsWholeRecords() throws IOException {
+        File file = write(10);
+        long length = file.length();
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            // Half a record missing at the end, as after a crash mid-write
+            raf.setLength(length - FeatureRecorder.recordBytes(Features.WIDTH) / 2);
+        }
+        try (FeatureReplay replay = new FeatureReplay(file)) {
+            assertEquals(9, replay.getRecordCount());
+        }
+    }
+
+    @Test
+    public void rejectsOtherFiles() throws IOException {
+        File file = folder.newFile("other.deej");
+        Files.write(file.toPath(), new byte[100]);
+        try (FeatureReplay replay = new FeatureReplay(file)) {
+            fail("Opened " + file);
+        } catch (IOException e) {
+            assertTrue(e.getMessage(), e.getMessage().startsWith("Not a DeeJ feature log"));
+        }
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ * DeeJ - An ImageJ plugin detects sound levels of mic or computer and triggers Fiji commands on the currently active window based on a defined threshold.
+ * 
+ * License: This software is provided under the GNU General Public License (GPL) version 3.
+ * Copyright (c) 2025 Hugo LE GUENNO
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package deej.analysis;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+public class OnsetDetectorTest {
+
+    private static final float RATE = 44100;
+
+    // Short decaying 1 kHz bursts at the given rate, silence in between
+    static float[] clicks(double seconds, double perSecond) {
+        float[] samples = new float[(int) (seconds * RATE)];
+        int period = (int) (RATE / perSecond);
+        for (int i = 0; i < samples.length; i++) {
+            int t = i % period;
+            samples[i] = t < 441 ? (float) (0.8 * Math.exp(-t / 100.0) * Math.sin(2 * Math.PI * 1000 * t / RATE)) : 0;
+        }
+        return samples;
+    }
+
+    @Test
+    public void silenceIsInactiveAndHasNoOnsets() {
+        OnsetDetector detector = new OnsetDetector(RATE);
+        float[] silence = new float[(int) (5 * RATE)];
+        assertEquals(0, detector.process(silence, 0, silence.length));
+        assertFalse(detector.isActive());
+        assertEquals(-1, detector.getLastOnsetSample());
+    }
+
+    // Feeds seconds of a sine of the given amplitude, or silence for 0, and returns whether the
+    // detector was active at every hop after the first 100 ms
+    private static boolean activeThroughout(OnsetDetector detector, double seconds, double amplitude) {
+        int samples = (int) (seconds * RATE);
+        boolean active = true;
+        for (int i = 0; i < samples; i++) {
+            detector.process((float) (amplitude * Math.sin(2 * Math.PI * 440 * i / RATE)));
+            if (i % 512 == 0 && i > RATE / 10) {
+                active &= detector.isActive();
+            }
+        }
+        return active;
+    }
+
+    @Test
+    public void aSteadyToneStaysActive() {
+        OnsetDetector detector = new OnsetDetector(RATE);
+        assertTrue(activeThroughout(detector, 30, 0.5));
+        assertTrue(activeThroughout(new OnsetDetector(RATE), 30, 0.05));
+    }
+
+    @Test
+    public void silenceToneSilence() {
+        OnsetDetector detector = new OnsetDetector(RATE);
+        activeThroughout(detector, 2, 0);
+        assertFalse(detector.isActive());
+        assertTrue(activeThroughout(detector, 20, 0.5));
+        activeThroughout(detector, 2, 0);
+        assertFalse(detector.isActive());
+        assertTrue(activeThroughout(detector, 5, 0.5));
+    }
+
+    @Test
+    public void steadyHissBecomesSilence() {
+        OnsetDetector detector = new OnsetDetector(RATE);
+        Random random = new Random(1);
+        for (int i = 0; i < 30 * RATE; i++) {
+            detector.process((float) (0.003 * random.nextGaussian()));
+        }
+        assertFalse(detector.isActive());
+    }
+
+    @Test
+    public void findsOneOnsetPerClick() {
+        OnsetDetector detector = new OnsetDetector(RATE);
+        float[] samples = clicks(10, 2);
+        int onsets = detector.process(samples, 0, samples.length);
+        assertEquals(20, onsets, 1);
+    }
+
+    @Test
+    public void resetForgetsTheSignal() {
+        OnsetDetector detector = new OnsetDetector(RATE);
+        float[] samples = clicks(1, 2);
+        detector.process(samples, 0, samples.length);
+        detector.reset();
+        assertEquals(0, detector.getEnvelope(), 0);
+        assertFalse(detector.isActive());
+        assertEquals(-1, detector.getLastOnsetSample());
+        assertTrue(detector.process(samples, 0, 4410) > 0);
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * DeeJ - An ImageJ plugin detects sound levels of mic or computer and triggers Fiji commands on the currently active window based on a defined threshold.
+ * 
+ * License: This software is provided under the GNU General Public License (GPL) version 3.
+ * Copyright (c) 2025 Hugo LE GUENNO
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package deej.analysis;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+public class TempoEstimatorTest {
+
+    private static final float RATE = 44100;
+
+    @Test
+    public void countsNoBeatsBeforeTwoOnsets() {
+        TempoEstimator tempo = new TempoEstimator(RATE);
+        assertEquals(0, tempo.update((long) (5 * RATE), true));
+        tempo.onOnset((long) (5 * RATE));
+        assertEquals(0, tempo.update((long) (6 * RATE), true));
+        assertEquals(0, tempo.getBeatIndex());
+    }
+
+    @Test
+    public void locksOntoRegularOnsets() {
+        TempoEstimator tempo = new TempoEstimator(RATE);
+        // 100 bpm, one onset every 0.6 s for 12 s
+        long period = (long) (0.6 * RATE);
+        int beats = 0;
+        for (long sample = 0; sample < 12 * RATE; sample += 441) {
+            if (sample % period < 441) {
+                tempo.onOnset(sample);
+            }
+            beats += tempo.update(sample, true);
+        }
+        assertEquals(100, tempo.getBpm(), 2);
+        assertEquals(19, beats, 1);
+    }
+
+    @Test
+    public void stopsWhenInactiveOrWithoutOnsets() {
+        TempoEstimator tempo = new TempoEstimator(RATE);
+        long period = (long) (0.5 * RATE);
+        for (int i = 0; i < 4; i++) {
+            tempo.onOnset(i * period);
+        }
+        long last = 3 * period;
+        assertEquals(0, tempo.update(last + 2 * period, false));
+        // The clock runs on by itself for a few beats, then waits for onsets again
+        int beats = tempo.update(last + 4 * period, true);
+        assertEquals(2, beats, 1);
+        assertEquals(0, tempo.update(last + 60 * period, true));
+    }
+
+    @Test
+    public void onsetCountsFeedTheClockThroughTheDetector() {
+        OnsetDetector detector = new OnsetDetector(RATE);
+        TempoEstimator tempo = new TempoEstimator(RATE);
+        float[] samples = OnsetDetectorTest.clicks(10, 2);
+        int beats = 0;
+        for (int i = 0; i < samples.length; i++) {
+            if (detector.process(samples[i])) {
+                tempo.onOnset(detector.getSampleCount());
+            }
+            if (i % 512 == 0) {
+                beats += tempo.update(detector.getSampleCount(), detector.isActive());
+            }
+        }
+        assertEquals(120, tempo.getBpm(), 3);
+        assertEquals(18, beats, 2);
+    }
+}
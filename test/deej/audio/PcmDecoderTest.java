@@ -0,0 +1,129 @@
+/*
+ * DeeJ - An ImageJ plugin detects sound levels of mic or computer and triggers Fiji commands on the currently active window based on a defined threshold.
+ * 
+ * License: This software is provided under the GNU General Public License (GPL) version 3.
+ * Copyright (c) 2025 Hugo LE GUENNO
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package deej.audio;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import javax.sound.sampled.AudioFormat;
+
+import org.junit.Test;
+
+public class PcmDecoderTest {
+
+    private static final float EPSILON = 1e-6f;
+
+    // Interleaved integer samples of the given size written in the given byte order
+    private static byte[] pcm(int bits, boolean bigEndian, int... samples) {
+        int bytes = bits / 8;
+        byte[] data = new byte[samples.length * bytes];
+        for (int s = 0; s < samples.length; s++) {
+            for (int b = 0; b < bytes; b++) {
+                int shift = bigEndian ? 8 * (bytes - 1 - b) : 8 * b;
+                data[s * bytes + b] = (byte) (samples[s] >> shift);
+            }
+        }
+        return data;
+    }
+
+    private static float[] decode(AudioFormat format, byte[] data, int channel) {
+        PcmDecoder decoder = new PcmDecoder(format);
+        decoder.setChannel(channel);
+        float[] out = new float[data.length / format.getFrameSize()];
+        assertEquals(out.length, decoder.decode(data, data.length, out));
+        return out;
+    }
+
+    @Test
+    public void decodes16BitInBothByteOrders() {
+        for (boolean bigEndian : new boolean[] {false, true}) {
+            AudioFormat format = new AudioFormat(44100, 16, 1, true, bigEndian);
+            float[] out = decode(format, pcm(16, bigEndian, -32768, 16384, -1, 255), -1);
+            assertEquals(-1f, out[0], EPSILON);
+            assertEquals(0.5f, out[1], EPSILON);
+            assertEquals(-1f / 32768, out[2], EPSILON);
+            assertEquals(255f / 32768, out[3], EPSILON);
+        }
+    }
+
+    @Test
+    public void decodes24BitWithSignExtension() {
+        for (boolean bigEndian : new boolean[] {false, true}) {
+            AudioFormat format = new AudioFormat(44100, 24, 1, true, bigEndian);
+            float[] out = decode(format, pcm(24, bigEndian, -8388608, 4194304, -2, 0x0000ff), -1);
+            assertEquals(-1f, out[0], EPSILON);
+            assertEquals(0.5f, out[1], EPSILON);
+            assertEquals(-2f / 8388608, out[2], EPSILON);
+            assertEquals(255f / 8388608, out[3], EPSILON);
+        }
+    }
+
+    @Test
+    public void decodes32BitIntegerAndFloat() {
+        AudioFormat ints = new AudioFormat(44100, 32, 1, true, false);
+        float[] out = decode(ints, pcm(32, false, Integer.MIN_VALUE, 1 << 30), -1);
+        assertEquals(-1f, out[0], EPSILON);
+        assertEquals(0.5f, out[1], EPSILON);
+
+        AudioFormat floats = new AudioFormat(AudioFormat.Encoding.PCM_FLOAT, 44100, 32, 1, 4, 44100, true);
+        ByteBuffer data = ByteBuffer.allocate(8).order(ByteOrder.BIG_ENDIAN);
+        data.putFloat(0.25f).putFloat(-0.75f);
+        out = decode(floats, data.array(), -1);
+        assertEquals(0.25f, out[0], 0);
+        assertEquals(-0.75f, out[1], 0);
+    }
+
+    @Test
+    public void mixesOrSelectsChannelsWithPerChannelStats() {
+        AudioFormat stereo = new AudioFormat(44100, 16, 2, true, false);
+        // Left at +0.5, right at -0.5: the mix cancels out, the level must not
+        byte[] data = pcm(16, false, 16384, -16384, 16384, -16384);
+        PcmDecoder decoder = new PcmDecoder(stereo);
+        float[] out = new float[2];
+        decoder.decode(data, data.length, out);
+        assertEquals(0f, out[0], EPSILON);
+        assertEquals(0.5f, decoder.getPeak(), EPSILON);
+        assertEquals(0.5f, decoder.getRms(), EPSILON);
+        assertEquals(0.5f, decoder.getPeak(1), EPSILON);
+
+        assertEquals(-0.5f, decode(stereo, data, 1)[0], EPSILON);
+        assertEquals(0.5f, decode(stereo, data, 0)[0], EPSILON);
+    }
+
+    @Test
+    public void decodesOnlyWholeFrames() {
+        AudioFormat format = new AudioFormat(44100, 24, 2, true, false);
+        PcmDecoder decoder = new PcmDecoder(format);
+        float[] out = new float[8];
+        assertEquals(1, decoder.decode(new byte[10], 10, out));
+    }
+
+    @Test
+    public void rejectsUnsupportedFormats() {
+        assertFalse(PcmDecoder.isSupported(new AudioFormat(44100, 8, 1, true, false)));
+        assertFalse(PcmDecoder.isSupported(new AudioFormat(44100, 16, 1, false, false)));
+        assertTrue(PcmDecoder.isSupported(new AudioFormat(44100, 24, 2, true, true)));
+    }
+}
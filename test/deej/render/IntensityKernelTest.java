@@ -0,0 +1,97 @@
+/*
+ * DeeJ - An ImageJ plugin detects sound levels of mic or computer and triggers Fiji commands on the currently active window based on a defined threshold.
+ * 
+ * License: This software is provided under the GNU General Public License (GPL) version 3.
+ * Copyright (c) 2025 Hugo LE GUENNO
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package deej.render;
+
+import static org.junit.Assert.assertEquals;
+
+import java.awt.image.IndexColorModel;
+
+import org.junit.Test;
+
+import ij.process.ByteProcessor;
+import ij.process.ShortProcessor;
+
+public class IntensityKernelTest {
+
+    // 256 x 1 ramp, pixel i holds the value i
+    private static ByteProcessor ramp() {
+        ByteProcessor ip = new ByteProcessor(256, 1);
+        for (int i = 0; i < 256; i++) {
+            ip.set(i, 0, i);
+        }
+        return ip;
+    }
+
+    private static int[] rgbs(ByteProcessor ip) {
+        int[] rgbs = new int[256];
+        ((IndexColorModel) ip.getColorModel()).getRGBs(rgbs);
+        return rgbs;
+    }
+
+    @Test
+    public void aFullWindowShowsEachValueInItsColour() {
+        ByteProcessor ip = ramp();
+        IntensityKernel kernel = new IntensityKernel();
+        kernel.setDisplay(ip);
+        int[] out = kernel.apply(ip, null);
+        int[] colors = rgbs(ip);
+        for (int i = 0; i < 256; i++) {
+            assertEquals(colors[i], out[i]);
+        }
+    }
+
+    @Test
+    public void anotherLutOrWindowIsPickedUpOnTheNextFrame() {
+        ByteProcessor ip = ramp();
+        IntensityKernel kernel = new IntensityKernel();
+        kernel.setDisplay(ip);
+        int[] out = kernel.apply(ip, null);
+        assertEquals(0xff000000, out[0]);
+
+        // Inverting sets a new colour model, the cached colours must not be reused
+        ip.invertLut();
+        kernel.setDisplay(ip);
+        kernel.apply(ip, out);
+        assertEquals(rgbs(ip)[0], out[0]);
+        assertEquals(0xffffffff, out[0]);
+
+        // Same LUT, narrower window: values at or above the maximum take the last colour
+        ip.setMinAndMax(0, 127);
+        kernel.setDisplay(ip);
+        kernel.apply(ip, out);
+        assertEquals(0xff000000, out[200]);
+    }
+
+    @Test
+    public void sixteenBitValuesFollowTheWindow() {
+        ShortProcessor ip = new ShortProcessor(3, 1);
+        ip.set(0, 0, 100);
+        ip.set(1, 0, 1100);
+        ip.set(2, 0, 5000);
+        ip.setMinAndMax(100, 1100);
+        IntensityKernel kernel = new IntensityKernel();
+        kernel.setDisplay(ip);
+        int[] out = kernel.apply(ip, null);
+        assertEquals(0xff000000, out[0]);
+        assertEquals(0xffffffff, out[1]);
+        assertEquals(0xffffffff, out[2]);
+    }
+}
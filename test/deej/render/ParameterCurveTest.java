@@ -0,0 +1,83 @@
+/*
+ * DeeJ - An ImageJ plugin detects sound levels of mic or computer and triggers Fiji commands on the currently active window based on a defined threshold.
+ * 
+ * License: This software is provided under the GNU General Public License (GPL) version 3.
+ * Copyright (c) 2025 Hugo LE GUENNO
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package deej.render;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+public class ParameterCurveTest {
+
+    @Test
+    public void interpolatesBetweenPointsAndHoldsTheEnds() {
+        ParameterCurve curve = ParameterCurve.parse("100:1, 200:3, 400:-1");
+        assertEquals(1, curve.map(0), 1e-6);
+        assertEquals(1, curve.map(100), 1e-6);
+        assertEquals(2, curve.map(150), 1e-6);
+        assertEquals(2.51, curve.map(175.5), 1e-6);
+        assertEquals(3, curve.map(200), 1e-6);
+        assertEquals(1, curve.map(300), 1e-6);
+        assertEquals(-1, curve.map(400), 1e-6);
+        assertEquals(-1, curve.map(1e9), 1e-6);
+        assertEquals(1, curve.map(Double.NaN), 1e-6);
+    }
+
+    @Test
+    public void stepsWithinOneLevelUnit() {
+        ParameterCurve curve = ParameterCurve.parse("0:0, 99:0, 100:1");
+        assertEquals(0, curve.map(99), 1e-6);
+        assertEquals(0.5, curve.map(99.5), 1e-6);
+        assertEquals(1, curve.map(100), 1e-6);
+    }
+
+    @Test
+    public void printsWhatItParsed() {
+        String text = "0:1, 125:0.95, 2000:0.3";
+        assertEquals(text, ParameterCurve.parse(text).toString());
+        assertEquals(ParameterCurve.ROTATION.toString(), ParameterCurve.parse(ParameterCurve.ROTATION.toString()).toString());
+    }
+
+    @Test
+    public void rejectsBadCurves() {
+        String[] texts = {"", "1:2:3", "a:1", "10:1, 5:2", "10:1, 10:2", "-1:0", "0:0, 200000:1", "0:0, NaN:1"};
+        for (String text : texts) {
+            try {
+                ParameterCurve.parse(text);
+                fail("Accepted '" + text + "'");
+            } catch (IllegalArgumentException e) {
+                // expected
+            }
+        }
+    }
+
+    @Test
+    public void followerUsesAttackWhileTheLevelRises() {
+        // A falling curve, as for contrast: the attack must apply when the sound gets louder
+        ParameterMapping mapping = new ParameterMapping(ParameterCurve.parse("0:1, 1000:0"), 10, 1000, 0);
+        ParameterMapping.Follower follower = mapping.newFollower();
+        follower.update(0, 0);
+        double louder = follower.update(1000, 10_000_000L);
+        assertEquals(Math.exp(-1), louder, 1e-6);
+        double quieter = follower.update(0, 20_000_000L);
+        assertEquals(louder + (1 - louder) * (1 - Math.exp(-0.01)), quieter, 1e-6);
+    }
+}
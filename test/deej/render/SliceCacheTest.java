@@ -0,0 +1,127 @@
+/*
+ * DeeJ - An ImageJ plugin detects sound levels of mic or computer and triggers Fiji commands on the currently active window based on a defined threshold.
+ * 
+ * License: This software is provided under the GNU General Public License (GPL) version 3.
+ * Copyright (c) 2025 Hugo LE GUENNO
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package deej.render;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import ij.ImageStack;
+import ij.process.ByteProcessor;
+import ij.process.ColorProcessor;
+import ij.process.ImageProcessor;
+
+public class SliceCacheTest {
+
+    // Stack counting its reads, slice n filled with the value n
+    private static class CountingStack extends ImageStack {
+
+        final AtomicInteger reads = new AtomicInteger();
+
+        CountingStack(int slices, boolean rgb) {
+            super(10, 10);
+            for (int n = 1; n <= slices; n++) {
+                ImageProcessor ip = rgb ? new ColorProcessor(10, 10) : new ByteProcessor(10, 10);
+                ip.setColor(n);
+                ip.fill();
+                addSlice("slice " + n, ip);
+            }
+        }
+
+        @Override
+        public ImageProcessor getProcessor(int n) {
+            reads.incrementAndGet();
+            return super.getProcessor(n);
+        }
+    }
+
+    @Test
+    public void keepsTheMostRecentlyUsedSlicesWithinBudget() {
+        CountingStack source = new CountingStack(4, false);
+        SliceCache cache = new SliceCache(source, 200);
+        try {
+            cache.getProcessor(1);
+            cache.getProcessor(2);
+            cache.getProcessor(1);
+            cache.getProcessor(3);
+            assertTrue(cache.isCached(1));
+            assertFalse(cache.isCached(2));
+            assertTrue(cache.isCached(3));
+            assertEquals(3, source.reads.get());
+            assertEquals(1, cache.getProcessor(1).get(0, 0));
+            assertEquals(3, source.reads.get());
+        } finally {
+            cache.close();
+        }
+    }
+
+    @Test
+    public void returnsCopiesOfCachedSlices() {
+        SliceCache cache = new SliceCache(new CountingStack(2, false), 1000);
+        try {
+            cache.getProcessor(2).set(0, 0, 99);
+            assertEquals(2, cache.getProcessor(2).get(0, 0));
+            assertEquals("slice 2", cache.getSliceLabel(2));
+            assertEquals(2, cache.getSize());
+        } finally {
+            cache.close();
+        }
+    }
+
+    @Test
+    public void countsRgbSlicesAsFourBytesPerPixel() {
+        // 1000 bytes hold three 10x10 slices at 3 bytes per pixel, but only two int planes
+        SliceCache cache = new SliceCache(new CountingStack(3, true), 1000);
+        try {
+            for (int n = 1; n <= 3; n++) {
+                cache.getProcessor(n);
+            }
+            assertFalse(cache.isCached(1));
+            assertTrue(cache.isCached(2));
+            assertTrue(cache.isCached(3));
+            assertEquals(3, cache.getProcessor(3).get(0, 0) & 0xffffff);
+        } finally {
+            cache.close();
+        }
+    }
+
+    @Test
+    public void prefetchLoadsInTheBackground() throws InterruptedException {
+        CountingStack source = new CountingStack(4, false);
+        SliceCache cache = new SliceCache(source, 1000);
+        try {
+            cache.prefetch(0, 3, 5);
+            long deadline = System.nanoTime() + 5_000_000_000L;
+            while (!cache.isCached(3) && System.nanoTime() < deadline) {
+                Thread.sleep(5);
+            }
+            assertTrue(cache.isCached(3));
+            assertEquals(3, cache.getProcessor(3).get(0, 0));
+            assertEquals(1, source.reads.get());
+        } finally {
+            cache.close();
+        }
+    }
+}